@@ -0,0 +1,108 @@
+package com.reactivespring.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reactivespring.deadline.Deadline;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.DeadlineExceededException;
+import com.reactivespring.repository.MovieInfoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of movieInfos by id. The writes of this instance evict what they change once they are
+ * done; writes through another instance are only seen once the entry expires after expire-after. Ids without a
+ * movieInfo are not cached.
+ */
+@Component
+@Slf4j
+public class MovieInfoCache {
+
+    private final MovieInfoRepository movieInfoRepository;
+
+    private final boolean enabled;
+
+    private final Duration loadTimeout;
+
+    private final AsyncCache<String, MovieInfo> cache;
+
+    public MovieInfoCache(MovieInfoRepository movieInfoRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${movieinfos.cache.enabled:true}") boolean enabled,
+                          @Value("${movieinfos.cache.max-entries:10000}") long maxEntries,
+                          @Value("${movieinfos.cache.expire-after:1m}") Duration expireAfter,
+                          @Value("${movieinfos.cache.load-timeout:5s}") Duration loadTimeout) {
+        this.movieInfoRepository = movieInfoRepository;
+        this.enabled = enabled;
+        this.loadTimeout = loadTimeout;
+        var builder = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(expireAfter)
+                .recordStats();
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, builder.buildAsync(), "movieinfos");
+    }
+
+    public Mono<MovieInfo> get(String movieInfoId) {
+        if (!enabled) {
+            return movieInfoRepository.findById(movieInfoId);
+        }
+        // the load is shared with the callers that miss while it runs, so it is bounded by load-timeout rather than
+        // by the deadline of the caller that started it; each caller waits for its copy within its own deadline
+        return withinDeadline(Mono.fromFuture(() -> cache.get(movieInfoId, (id, executor) ->
+                        load(movieInfoRepository.findById(id))).copy()), "the movieInfo " + movieInfoId);
+    }
+
+    /**
+     * The movieInfos of the ids that have one, the ones not cached loaded with a single query.
+     */
+    public Flux<MovieInfo> getAll(List<String> movieInfoIds) {
+        if (!enabled) {
+            return movieInfoRepository.findAllById(movieInfoIds);
+        }
+        return withinDeadline(Mono.fromFuture(() -> cache.getAll(movieInfoIds, (ids, executor) -> {
+                    var idList = new ArrayList<String>();
+                    ids.forEach(idList::add);
+                    return load(movieInfoRepository.findAllById(idList)
+                            .collectMap(MovieInfo::getMovieInfoId, Function.identity()));
+                }).copy()), movieInfoIds.size() + " movieInfos")
+                .flatMapIterable(Map::values);
+    }
+
+    /**
+     * Runs a load with a deadline of its own, which the repository sends to Mongo as maxTimeMS.
+     */
+    private <T> CompletableFuture<T> load(Mono<T> query) {
+        return query.contextWrite(Context.of(Deadline.class, Deadline.after(loadTimeout))).toFuture();
+    }
+
+    private <T> Mono<T> withinDeadline(Mono<T> copy, String loaded) {
+        return Deadline.current().flatMap(deadline -> deadline
+                .map(value -> copy.timeout(value.remaining(), Mono.error(() -> new DeadlineExceededException(
+                        "Request deadline exceeded while loading " + loaded))))
+                .orElse(copy));
+    }
+
+    public void evict(String movieInfoId) {
+        if (movieInfoId != null) {
+            cache.synchronous().invalidate(movieInfoId);
+        }
+    }
+
+    public void evictAll() {
+        log.info("Evicting all movieInfos from the cache");
+        cache.synchronous().invalidateAll();
+    }
+}
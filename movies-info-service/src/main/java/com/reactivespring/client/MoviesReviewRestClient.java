@@ -0,0 +1,68 @@
+package com.reactivespring.client;
+
+import com.reactivespring.deadline.DeadlineExchangeFilter;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+
+@Component
+@Slf4j
+public class MoviesReviewRestClient {
+
+    private final WebClient webClient;
+
+    @Value("${restClient.moviesReviewURL}")
+    private String moviesReviewUrl;
+
+    public MoviesReviewRestClient(WebClient.Builder webClientBuilder,
+                                  @Value("${restClient.moviesReview.connect-timeout:1s}") Duration connectTimeout,
+                                  @Value("${restClient.moviesReview.response-timeout:5s}") Duration responseTimeout) {
+        var httpClient = HttpClient.create()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(responseTimeout);
+        this.webClient = webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter(new DeadlineExchangeFilter())
+                .build();
+    }
+
+    /**
+     * Deletes all reviews of the movie in movies-review-service, within what is left of the request's deadline.
+     * Fails with a 503 ResponseStatusException when movies-review-service is unavailable or does not answer in
+     * time, and a 502 one when it answers with any other error.
+     */
+    public Mono<Void> deleteReviews(String movieInfoId) {
+        var url = UriComponentsBuilder.fromHttpUrl(moviesReviewUrl)
+                .queryParam("movieInfoId", movieInfoId)
+                .buildAndExpand().toUri();
+        return webClient.delete()
+                .uri(url)
+                .retrieve()
+                .toBodilessEntity()
+                .then()
+                .onErrorMap(WebClientResponseException.class, ex -> {
+                    log.warn("Deleting the reviews of movieInfo {} failed : {}", movieInfoId, ex.getMessage());
+                    var status = ex.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE
+                            ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.BAD_GATEWAY;
+                    return new ResponseStatusException(status, "The reviews of movieInfo " + movieInfoId
+                            + " could not be deleted : movies-review-service answered " + ex.getRawStatusCode(), ex);
+                })
+                .onErrorMap(WebClientRequestException.class, ex -> {
+                    log.warn("Deleting the reviews of movieInfo {} failed : {}", movieInfoId, ex.getMessage());
+                    return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The reviews of movieInfo "
+                            + movieInfoId + " could not be deleted : movies-review-service is unavailable", ex);
+                });
+    }
+}
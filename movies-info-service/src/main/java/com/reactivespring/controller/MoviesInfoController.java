@@ -1,6 +1,9 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchRequest;
+import com.reactivespring.domain.MovieInfoBatchResponse;
+import com.reactivespring.domain.MovieInfoImportResult;
 import com.reactivespring.service.MovieInfoService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -20,12 +23,15 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
+import java.util.List;
 
 @RestController
 @Slf4j
 @RequestMapping("/v1")
 public class MoviesInfoController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final MovieInfoService movieInfoService;
 
     public MoviesInfoController(MovieInfoService movieInfoService) {
@@ -54,21 +60,66 @@ public class MoviesInfoController {
     }
 
 
+    @PostMapping(value = "/movieinfos:batchGet", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<MovieInfoBatchResponse> batchGetMovieInfos(@RequestBody @Valid MovieInfoBatchRequest batchRequest) {
+        log.info(" Incoming batch of {} ids ", batchRequest.getIds().size());
+        return movieInfoService.getMoviesByIds(batchRequest.getIds());
+    }
+
+
+    /**
+     * Upserts NDJSON movieInfos keyed on name and year while the body is still being read. The import is not
+     * atomic: an invalid line fails the request with 400 after the chunks before it were written, and as upserts are
+     * idempotent the corrected file can simply be imported again.
+     */
+    @PostMapping(value = "/movieinfos/import", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<MovieInfoImportResult> importMovieInfos(@RequestBody @Valid Flux<MovieInfo> movieInfos) {
+        log.info(" Incoming movieInfo import ");
+        return movieInfoService.importMovieInfos(movieInfos);
+    }
+
+
+    /**
+     * Every movieInfo as NDJSON, streamed from the Mongo cursor as the client reads it; gzip compressed for clients
+     * that accept it, see server.compression.
+     */
+    @GetMapping(value = "/movieinfos/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieInfo> exportMovieInfos() {
+        return movieInfoService.exportMovieInfos();
+    }
+
+
     @DeleteMapping("/movieinfos/{id}")
-    @ResponseStatus(HttpStatus.NO_CONTENT)
-    public Mono<Void> delete(@PathVariable("id") String id) {
+    public Mono<ResponseEntity<Void>> delete(@PathVariable("id") String id) {
         log.info(" Incoming value id {} ", id);
-        return movieInfoService.deleteMovieById(id);
+        return movieInfoService.deleteMovieById(id)
+                .map(deleted -> deleted
+                        ? ResponseEntity.noContent().<Void>build()
+                        : ResponseEntity.notFound().<Void>build());
     }
 
 
+    /**
+     * One page of movieInfos, the X-Next-Cursor header carries the value to pass as after for the next page and is
+     * absent on the last one. limit is capped at movieinfos.page.max-size.
+     */
     @GetMapping("/movieinfos")
-    public Flux<MovieInfo> getAllMovies(@RequestParam(value = "year", required = false) Integer year) {
-        log.info(" Year :: {} ", year);
-        if (null != year) {
-            return movieInfoService.getMovieInfoByYear(year);
-        }
-        return movieInfoService.getAllMovies();
+    public Mono<ResponseEntity<List<MovieInfo>>> getAllMovies(
+            @RequestParam(value = "year", required = false) Integer year,
+            @RequestParam(value = "sort", defaultValue = "id") String sort,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "after", required = false) String after) {
+        log.info(" Year :: {} sort :: {} limit :: {} after :: {} ", year, sort, limit, after);
+        return movieInfoService.getMovieInfoPage(year, sort, limit, after)
+                .map(page -> {
+                    var response = ResponseEntity.ok();
+                    if (page.getNextCursor() != null) {
+                        response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+                    }
+                    return response.body(page.getMovieInfos());
+                });
     }
 
 
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotBlank;
@@ -16,6 +17,12 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document
+// serve the pages of GET /v1/movieinfos per sort order, see MovieInfoRepositoryCustom#findMovieInfoPage
+@CompoundIndex(name = "year_id", def = "{'year': 1, '_id': 1}")
+@CompoundIndex(name = "name_id", def = "{'name': 1, '_id': 1}")
+@CompoundIndex(name = "year_name_id", def = "{'year': 1, 'name': 1, '_id': 1}")
+// a movie is identified by its name and year, which the import upserts on, see MovieInfoDeduplication
+@CompoundIndex(name = "year_name", def = "{'year': 1, 'name': 1}", unique = true)
 public class MovieInfo {
 
     @Id
@@ -31,4 +38,11 @@ public class MovieInfo {
     private List<@NotBlank(message = "movieInfo.cast must be  present") String> cast;
 
     private LocalDate release_date;
+
+    // incremented by every update; an update that carries a version only applies while it still matches
+    private Long version;
+
+    public MovieInfo(String movieInfoId, String name, Integer year, List<String> cast, LocalDate release_date) {
+        this(movieInfoId, name, year, cast, release_date, null);
+    }
 }
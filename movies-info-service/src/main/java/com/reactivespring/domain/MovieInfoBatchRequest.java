@@ -0,0 +1,20 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieInfoBatchRequest {
+
+    @NotEmpty(message = "movieInfoBatchRequest.ids must be present")
+    @Size(max = 500, message = "movieInfoBatchRequest.ids must not contain more than 500 ids")
+    private List<@NotBlank(message = "movieInfoBatchRequest.ids must not contain blank ids") String> ids;
+}
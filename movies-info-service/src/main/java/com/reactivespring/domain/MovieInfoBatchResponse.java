@@ -0,0 +1,17 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieInfoBatchResponse {
+
+    // in the order of the requested ids
+    private List<MovieInfo> movieInfos;
+    private List<String> missingIds;
+}
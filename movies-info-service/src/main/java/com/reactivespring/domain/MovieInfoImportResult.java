@@ -0,0 +1,17 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieInfoImportResult {
+
+    // movieInfos without a stored one of the same name and year
+    private long inserted;
+    private long updated;
+    // rejected by Mongo, e.g. a movieInfoId already taken by a movie info of another name or year
+    private long failed;
+}
@@ -0,0 +1,46 @@
+package com.reactivespring.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+/**
+ * Creates the indexes declared on the documents while the application starts, before it serves any request.
+ * A failure to create one fails the start, instead of leaving the queries that need it to scan the collection.
+ */
+@Component
+@Slf4j
+public class MongoIndexInitializer {
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    private final MongoMappingContext mappingContext;
+
+    public MongoIndexInitializer(ReactiveMongoOperations mongoOperations, MongoMappingContext mappingContext) {
+        this.mongoOperations = mongoOperations;
+        this.mappingContext = mappingContext;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void ensureIndexes() {
+        var indexResolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        Flux.fromIterable(mappingContext.getPersistentEntities())
+                .filter(entity -> entity.isAnnotationPresent(Document.class))
+                .map(MongoPersistentEntity::getType)
+                .concatMap(type -> Flux.fromIterable(indexResolver.resolveIndexFor(type))
+                        .concatMap(index -> mongoOperations.indexOps(type).ensureIndex(index))
+                        .doOnNext(indexName -> log.info("Ensured index {} of {}", indexName, type.getSimpleName())))
+                .blockLast(TIMEOUT);
+    }
+}
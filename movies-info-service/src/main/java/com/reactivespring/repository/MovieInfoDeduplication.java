@@ -0,0 +1,65 @@
+package com.reactivespring.repository;
+
+import com.mongodb.client.model.Filters;
+import com.reactivespring.domain.MovieInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Removes the movieInfos stored with the name and year of another one while nothing kept them unique, so that the
+ * unique year_name index can be created. Of each name and year the most recently updated movieInfo is kept, the
+ * highest version and then the lowest id. Runs while the application starts, before MongoIndexInitializer, and
+ * finds nothing left to do once the index exists. The reviews of the removed movieInfos are left in
+ * movies-review-service; their ids are logged.
+ */
+@Component
+@Slf4j
+public class MovieInfoDeduplication {
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(10);
+
+    private static final int BATCH_SIZE = 500;
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public MovieInfoDeduplication(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void removeDuplicateMovieInfos() {
+        var duplicates = List.of(
+                new Document("$sort", new Document("version", -1).append("_id", 1)),
+                new Document("$group", new Document("_id", new Document("year", "$year").append("name", "$name"))
+                        .append("ids", new Document("$push", "$_id"))),
+                new Document("$match", new Document("ids.1", new Document("$exists", true))));
+        var removed = mongoOperations.getCollection(mongoOperations.getCollectionName(MovieInfo.class))
+                .flatMap(collection -> Flux.from(collection.aggregate(duplicates).allowDiskUse(true))
+                        .concatMapIterable(group -> {
+                            var ids = group.getList("ids", Object.class);
+                            var removedIds = ids.subList(1, ids.size());
+                            log.warn("Removing movieInfos {}, duplicates of {} with the same name and year : {}",
+                                    removedIds, ids.get(0), group.get("_id"));
+                            return removedIds;
+                        })
+                        .buffer(BATCH_SIZE)
+                        .concatMap(ids -> Mono.from(collection.deleteMany(Filters.in("_id", ids))))
+                        .reduce(0L, (count, result) -> count + result.getDeletedCount()))
+                .block(TIMEOUT);
+        if (removed != null && removed > 0) {
+            log.info("Removed {} duplicate movieInfos", removed);
+        }
+    }
+}
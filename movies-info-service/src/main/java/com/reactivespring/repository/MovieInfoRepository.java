@@ -3,11 +3,13 @@ package com.reactivespring.repository;
 import com.reactivespring.domain.MovieInfo;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-public interface MovieInfoRepository extends ReactiveMongoRepository<MovieInfo, String> {
+public interface MovieInfoRepository extends ReactiveMongoRepository<MovieInfo, String>, MovieInfoRepositoryCustom {
 
-
-    Flux<MovieInfo> findByYear(Integer year);
+    // redeclared so that calls resolve to the deadline-aware MovieInfoRepositoryCustom#findById
+    @Override
+    Mono<MovieInfo> findById(String id);
 
     Flux<MovieInfo> findByName(String name);
 
@@ -0,0 +1,50 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoImportResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Reads that take the request's deadline into account: the remaining budget is sent to Mongo as maxTimeMS,
+ * so the server stops working on a query nobody is waiting for anymore. These replace the derived and
+ * base repository implementations of the same methods.
+ */
+public interface MovieInfoRepositoryCustom {
+
+    Mono<MovieInfo> findById(String id);
+
+    Flux<MovieInfo> findAllById(Iterable<String> ids);
+
+    Flux<MovieInfo> findAll();
+
+    Flux<MovieInfo> findByYear(Integer year);
+
+    /**
+     * Sets the updatable fields of movieInfo that are not null on the stored one and increments its version in a
+     * single findAndModify, and returns the updated movieInfo. When movieInfo carries a version the update only applies
+     * while the stored version still matches. Empty when nothing was updated.
+     */
+    Mono<MovieInfo> updateMovieInfo(String id, MovieInfo movieInfo);
+
+    /**
+     * Deletes the movieInfo in a single round trip, true when there was one.
+     */
+    Mono<Boolean> deleteMovieInfoById(String id);
+
+    /**
+     * Up to limit movieInfos ordered by sortField and then movieInfoId, of one year when year is given, starting
+     * right after the movieInfo with afterValue and afterId when afterId is given; sortField is movieInfoId for
+     * id order. The index is entered at the cursor, so a deep page costs the same as the first one.
+     */
+    Flux<MovieInfo> findMovieInfoPage(Integer year, String sortField, Object afterValue, String afterId, int limit);
+
+    /**
+     * Upserts the movieInfos with one unordered bulkWrite, matching stored ones on name and year. A match gets the
+     * other fields set and its version incremented; otherwise the movieInfo is inserted, under its movieInfoId
+     * when it has one.
+     */
+    Mono<MovieInfoImportResult> upsertMovieInfos(List<MovieInfo> movieInfos);
+}
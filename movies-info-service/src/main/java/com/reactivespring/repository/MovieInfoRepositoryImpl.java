@@ -0,0 +1,181 @@
+package com.reactivespring.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.reactivespring.deadline.Deadline;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoImportResult;
+import com.reactivespring.exception.DeadlineExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+@Slf4j
+public class MovieInfoRepositoryImpl implements MovieInfoRepositoryCustom {
+
+    // maxTimeMS of 0 means no limit, so an exhausted budget still gets the smallest one Mongo accepts
+    private static final Duration MIN_MAX_TIME = Duration.ofMillis(1);
+
+    private static final String ID = "movieInfoId";
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public MovieInfoRepositoryImpl(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public Mono<MovieInfo> findById(String id) {
+        return find(Query.query(Criteria.where("_id").is(id))).next();
+    }
+
+    @Override
+    public Flux<MovieInfo> findAllById(Iterable<String> ids) {
+        var idList = new ArrayList<String>();
+        ids.forEach(idList::add);
+        return find(Query.query(Criteria.where("_id").in(idList)));
+    }
+
+    @Override
+    public Flux<MovieInfo> findAll() {
+        return find(new Query());
+    }
+
+    @Override
+    public Flux<MovieInfo> findByYear(Integer year) {
+        return find(Query.query(Criteria.where("year").is(year)));
+    }
+
+    @Override
+    public Mono<MovieInfo> updateMovieInfo(String id, MovieInfo movieInfo) {
+        var query = Query.query(Criteria.where(ID).is(id));
+        if (movieInfo.getVersion() != null) {
+            query.addCriteria(Criteria.where("version").is(movieInfo.getVersion()));
+        }
+        // a field left out of the request keeps its stored value
+        var update = new Update().inc("version", 1);
+        setIfPresent(update, "name", movieInfo.getName());
+        setIfPresent(update, "year", movieInfo.getYear());
+        setIfPresent(update, "cast", movieInfo.getCast());
+        setIfPresent(update, "release_date", movieInfo.getRelease_date());
+        return Deadline.current().flatMap(deadline -> {
+            maxTime(deadline).ifPresent(query::maxTime);
+            return mongoOperations.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                    MovieInfo.class);
+        }).onErrorMap(MovieInfoRepositoryImpl::isMaxTimeExpired, MovieInfoRepositoryImpl::deadlineExceeded);
+    }
+
+    private static void setIfPresent(Update update, String field, Object value) {
+        if (value != null) {
+            update.set(field, value);
+        }
+    }
+
+    @Override
+    public Mono<Boolean> deleteMovieInfoById(String id) {
+        return mongoOperations.remove(Query.query(Criteria.where(ID).is(id)), MovieInfo.class)
+                .map(deleteResult -> deleteResult.getDeletedCount() > 0);
+    }
+
+    @Override
+    public Flux<MovieInfo> findMovieInfoPage(Integer year, String sortField, Object afterValue, String afterId,
+                                             int limit) {
+        var query = new Query();
+        if (year != null) {
+            query.addCriteria(Criteria.where("year").is(year));
+        }
+        if (afterId != null) {
+            query.addCriteria(ID.equals(sortField) ? idAfter(afterId) : new Criteria().orOperator(
+                    Criteria.where(sortField).gt(afterValue),
+                    Criteria.where(sortField).is(afterValue).andOperator(idAfter(afterId))));
+        }
+        var sort = ID.equals(sortField) ? Sort.by(ID) : Sort.by(sortField, ID);
+        return find(query.with(sort).limit(limit));
+    }
+
+    @Override
+    public Mono<MovieInfoImportResult> upsertMovieInfos(List<MovieInfo> movieInfos) {
+        var upserts = movieInfos.stream()
+                .map(this::upsertByNameAndYear)
+                .collect(Collectors.toList());
+        return mongoOperations.getCollection(mongoOperations.getCollectionName(MovieInfo.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(upserts, new BulkWriteOptions().ordered(false))))
+                .map(result -> importResult(result, 0))
+                .onErrorResume(MongoBulkWriteException.class, ex -> {
+                    log.warn("{} of {} movieInfos were not upserted, first error : {}", ex.getWriteErrors().size(),
+                            movieInfos.size(), ex.getWriteErrors().get(0).getMessage());
+                    return Mono.just(importResult(ex.getWriteResult(), ex.getWriteErrors().size()));
+                });
+    }
+
+    private UpdateOneModel<Document> upsertByNameAndYear(MovieInfo movieInfo) {
+        // the converter maps ids and dates the same way save does
+        var fields = new Document();
+        mongoOperations.getConverter().write(movieInfo, fields);
+        var id = fields.remove("_id");
+        fields.remove("version");
+        var filter = new Document("name", fields.remove("name")).append("year", fields.remove("year"));
+        var update = new Document("$set", fields).append("$inc", new Document("version", 1));
+        if (id != null) {
+            update.append("$setOnInsert", new Document("_id", id));
+        }
+        return new UpdateOneModel<>(filter, update, new UpdateOptions().upsert(true));
+    }
+
+    private static MovieInfoImportResult importResult(BulkWriteResult result, int failed) {
+        return new MovieInfoImportResult(result.getUpserts().size(), result.getMatchedCount(), failed);
+    }
+
+    /**
+     * Ids that look like ObjectIds are stored as such and sort after all string ids, while $gt only compares
+     * values of the same BSON type; the mapping converts the id for equality but not for $gt.
+     */
+    private static Criteria idAfter(String afterId) {
+        if (ObjectId.isValid(afterId)) {
+            return Criteria.where(ID).gt(new ObjectId(afterId));
+        }
+        return new Criteria().orOperator(Criteria.where(ID).gt(afterId),
+                Criteria.where(ID).type(JsonSchemaObject.Type.objectIdType()));
+    }
+
+    private Flux<MovieInfo> find(Query query) {
+        return Deadline.current().flatMapMany(deadline -> {
+            maxTime(deadline).ifPresent(query::maxTime);
+            return mongoOperations.find(query, MovieInfo.class);
+        }).onErrorMap(MovieInfoRepositoryImpl::isMaxTimeExpired, MovieInfoRepositoryImpl::deadlineExceeded);
+    }
+
+    private static Optional<Duration> maxTime(Optional<Deadline> deadline) {
+        return deadline.map(Deadline::remaining)
+                .map(remaining -> remaining.compareTo(MIN_MAX_TIME) >= 0 ? remaining : MIN_MAX_TIME);
+    }
+
+    private static boolean isMaxTimeExpired(Throwable ex) {
+        return ex instanceof MongoExecutionTimeoutException
+                || NestedExceptionUtils.getMostSpecificCause(ex) instanceof MongoExecutionTimeoutException;
+    }
+
+    private static DeadlineExceededException deadlineExceeded(Throwable ex) {
+        return new DeadlineExceededException("Request deadline exceeded while querying movieInfo");
+    }
+}
@@ -1,50 +1,197 @@
 package com.reactivespring.service;
 
+import com.reactivespring.cache.MovieInfoCache;
+import com.reactivespring.client.MoviesReviewRestClient;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchResponse;
+import com.reactivespring.domain.MovieInfoImportResult;
+import com.reactivespring.domain.MovieInfoPage;
 import com.reactivespring.repository.MovieInfoRepository;
+import org.bson.Document;
+import org.bson.json.JsonParseException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 @Service
 public class MovieInfoService {
 
+    private static final Map<String, String> PAGE_SORT_FIELDS = Map.of(
+            "id", "movieInfoId",
+            "year", "year",
+            "name", "name");
+
     private final MovieInfoRepository movieInfoRepository;
 
-    public MovieInfoService(MovieInfoRepository movieInfoRepository) {
+    private final MoviesReviewRestClient moviesReviewRestClient;
+
+    private final MovieInfoCache movieInfoCache;
+
+    @Value("${movieinfos.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${movieinfos.page.max-size:100}")
+    private int maxPageSize;
+
+    @Value("${movieinfos.import.chunk-size:1000}")
+    private int importChunkSize;
+
+    public MovieInfoService(MovieInfoRepository movieInfoRepository, MoviesReviewRestClient moviesReviewRestClient,
+                            MovieInfoCache movieInfoCache) {
         this.movieInfoRepository = movieInfoRepository;
+        this.moviesReviewRestClient = moviesReviewRestClient;
+        this.movieInfoCache = movieInfoCache;
     }
 
     public Mono<MovieInfo> addMovie(MovieInfo movieInfo) {
-        return movieInfoRepository.save(movieInfo);
+        movieInfo.setVersion(0L);
+        // save replaces the movieInfo of an id that is taken
+        return movieInfoRepository.save(movieInfo)
+                .onErrorMap(DuplicateKeyException.class, ex -> nameAndYearTaken(movieInfo))
+                .doOnNext(saved -> movieInfoCache.evict(saved.getMovieInfoId()));
     }
 
-    public Mono<MovieInfo> getMovieById(String movieInfoId) {
-        return movieInfoRepository.findById(movieInfoId);
+    private static ResponseStatusException nameAndYearTaken(MovieInfo movieInfo) {
+        return new ResponseStatusException(HttpStatus.CONFLICT, "A movieInfo named " + movieInfo.getName()
+                + " of " + movieInfo.getYear() + " already exists");
     }
 
-    public Mono<Void> deleteMovieById(String movieInfoId) {
-        return movieInfoRepository.deleteById(movieInfoId);
+    /**
+     * Upserts movieInfos while they are still arriving, one bulkWrite per movieinfos.import.chunk-size of them;
+     * the next chunk is only read once the previous one is written.
+     */
+    public Mono<MovieInfoImportResult> importMovieInfos(Flux<MovieInfo> movieInfos) {
+        return movieInfos.buffer(importChunkSize)
+                // upserts match on name and year, the ids they touch are not known
+                .concatMap(chunk -> movieInfoRepository.upsertMovieInfos(chunk)
+                        .doFinally(signalType -> movieInfoCache.evictAll()))
+                .reduce(new MovieInfoImportResult(), (total, chunk) -> new MovieInfoImportResult(
+                        total.getInserted() + chunk.getInserted(),
+                        total.getUpdated() + chunk.getUpdated(),
+                        total.getFailed() + chunk.getFailed()));
     }
 
-    public Flux<MovieInfo> getAllMovies() {
+    public Flux<MovieInfo> exportMovieInfos() {
         return movieInfoRepository.findAll();
     }
 
+    public Mono<MovieInfo> getMovieById(String movieInfoId) {
+        return movieInfoCache.get(movieInfoId);
+    }
 
-    public Mono<MovieInfo> updateMovieInfo(MovieInfo updatedMovieInfo, String id) {
+    public Mono<MovieInfoBatchResponse> getMoviesByIds(List<String> movieInfoIds) {
+        var requestedIds = movieInfoIds.stream().distinct().collect(Collectors.toList());
+        // the ids that are not cached are resolved with a single $in query
+        return movieInfoCache.getAll(requestedIds)
+                .collectMap(MovieInfo::getMovieInfoId, Function.identity())
+                .map(movieInfosById -> {
+                    var movieInfos = requestedIds.stream()
+                            .map(movieInfosById::get)
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toList());
+                    var missingIds = requestedIds.stream()
+                            .filter(movieInfoId -> !movieInfosById.containsKey(movieInfoId))
+                            .collect(Collectors.toList());
+                    return new MovieInfoBatchResponse(movieInfos, missingIds);
+                });
+    }
+
+    /**
+     * Deletes the reviews of the movie before the movieInfo itself, so that a failed cascade leaves the movieInfo
+     * in place for the delete to be retried. The cascade is sent for any id, as deleting the reviews of an unknown
+     * movie is a no-op, which keeps this to a single Mongo call; true when the remove deleted a movieInfo.
+     */
+    public Mono<Boolean> deleteMovieById(String movieInfoId) {
+        return moviesReviewRestClient.deleteReviews(movieInfoId)
+                .then(movieInfoRepository.deleteMovieInfoById(movieInfoId))
+                .doFinally(signalType -> movieInfoCache.evict(movieInfoId));
+    }
 
-        return movieInfoRepository.findById(id).flatMap(
-                movieInfo -> {
-                    movieInfo.setYear(updatedMovieInfo.getYear());
-                    movieInfo.setCast(updatedMovieInfo.getCast());
-                    movieInfo.setName(updatedMovieInfo.getName());
-                    movieInfo.setRelease_date(updatedMovieInfo.getRelease_date());
-                    return movieInfoRepository.save(movieInfo);
+    /**
+     * One page of movieInfos in the given sort order, ties broken by movieInfoId, optionally of one year. The
+     * cursor of the page carries the sort value and id of its last movieInfo, to pass as after for the next page.
+     */
+    public Mono<MovieInfoPage> getMovieInfoPage(Integer year, String sort, Integer limit, String after) {
+        var sortField = PAGE_SORT_FIELDS.get(sort);
+        if (sortField == null) {
+            return Mono.error(badRequest("sort must be one of id, year, name"));
+        }
+        if (limit != null && limit <= 0) {
+            return Mono.error(badRequest("limit must be a positive value"));
+        }
+        var pageSize = Math.min(limit == null ? defaultPageSize : limit, maxPageSize);
+        Document cursor = null;
+        if (after != null) {
+            cursor = decodeCursor(after);
+            if (cursor == null || !sort.equals(cursor.get("sort")) || !(cursor.get("id") instanceof String)) {
+                return Mono.error(badRequest("after is not a valid cursor for sort " + sort));
+            }
+        }
+
+        var afterValue = cursor == null ? null : cursor.get("value");
+        var afterId = cursor == null ? null : cursor.getString("id");
+        // one more than asked for tells whether there is a next page
+        return movieInfoRepository.findMovieInfoPage(year, sortField, afterValue, afterId, pageSize + 1)
+                .collectList()
+                .map(movieInfos -> {
+                    if (movieInfos.size() <= pageSize) {
+                        return new MovieInfoPage(movieInfos, null);
+                    }
+                    var page = movieInfos.subList(0, pageSize);
+                    return new MovieInfoPage(page, encodeCursor(sort, page.get(pageSize - 1)));
                 });
     }
 
-    public Flux<MovieInfo> getMovieInfoByYear(Integer year) {
-        return movieInfoRepository.findByYear(year);
+    private static String encodeCursor(String sort, MovieInfo last) {
+        var value = "year".equals(sort) ? last.getYear() : "name".equals(sort) ? last.getName() : null;
+        var cursor = new Document("sort", sort).append("value", value).append("id", last.getMovieInfoId());
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(cursor.toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Document decodeCursor(String cursor) {
+        try {
+            return Document.parse(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException | JsonParseException ex) {
+            return null;
+        }
+    }
+
+    private static ResponseStatusException badRequest(String reason) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, reason);
+    }
+
+
+    /**
+     * Empty when there is no movieInfo with the id. Answers 409 when the update carries a version and the stored
+     * movieInfo has been updated since.
+     */
+    public Mono<MovieInfo> updateMovieInfo(MovieInfo updatedMovieInfo, String id) {
+        return movieInfoRepository.updateMovieInfo(id, updatedMovieInfo)
+                .onErrorMap(DuplicateKeyException.class, ex -> nameAndYearTaken(updatedMovieInfo))
+                .doOnNext(updated -> movieInfoCache.evict(id))
+                .switchIfEmpty(Mono.defer(() -> {
+                    if (updatedMovieInfo.getVersion() == null) {
+                        return Mono.empty();
+                    }
+                    // only a failed update pays for the second round trip that tells a conflict from a missing id
+                    return movieInfoRepository.existsById(id)
+                            .flatMap(exists -> exists
+                                    ? Mono.error(new ResponseStatusException(HttpStatus.CONFLICT, "movieInfo " + id
+                                    + " has been updated since version " + updatedMovieInfo.getVersion()))
+                                    : Mono.empty());
+                }));
     }
 }
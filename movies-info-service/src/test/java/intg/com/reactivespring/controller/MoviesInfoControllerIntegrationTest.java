@@ -1,19 +1,48 @@
 package com.reactivespring.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.cache.MovieInfoCache;
+import com.reactivespring.client.MoviesReviewRestClient;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchRequest;
+import com.reactivespring.domain.MovieInfoBatchResponse;
+import com.reactivespring.domain.MovieInfoImportResult;
+import com.reactivespring.repository.MongoIndexInitializer;
+import com.reactivespring.repository.MovieInfoDeduplication;
 import com.reactivespring.repository.MovieInfoRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.util.UriComponentsBuilder;
-
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.test.StepVerifier;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -28,6 +57,27 @@ class MoviesInfoControllerIntegrationTest {
     @Autowired
     WebTestClient webTestClient;
 
+    @Autowired
+    MovieInfoCache movieInfoCache;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    ReactiveMongoOperations mongoOperations;
+
+    @Autowired
+    MovieInfoDeduplication movieInfoDeduplication;
+
+    @Autowired
+    MongoIndexInitializer mongoIndexInitializer;
+
+    @LocalServerPort
+    int port;
+
+    @MockBean
+    MoviesReviewRestClient moviesReviewRestClient;
+
     String BASE_URL = "/v1/movieinfos";
 
     @BeforeEach
@@ -47,6 +97,8 @@ class MoviesInfoControllerIntegrationTest {
     @AfterEach
     void tearDown() {
         movieInfoRepository.deleteAll().block();
+        // the tests change the collection behind the service's back
+        movieInfoCache.evictAll();
     }
 
     @Test
@@ -68,6 +120,36 @@ class MoviesInfoControllerIntegrationTest {
     }
 
 
+    @Test
+    void addMovieInfo_NameAndYearTaken() {
+
+        var movieInfo = new MovieInfo(null, "Batman Begins",
+                2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+
+        webTestClient.post()
+                .uri(BASE_URL)
+                .bodyValue(movieInfo).exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody(String.class).isEqualTo("A movieInfo named Batman Begins of 2005 already exists");
+    }
+
+    @Test
+    void removeDuplicateMovieInfos() {
+        // stored before the name and year of a movieInfo were unique
+        mongoOperations.indexOps(MovieInfo.class).dropIndex("year_name").block();
+        movieInfoRepository.save(new MovieInfo("dup", "Batman Begins", 2005, List.of("Christian Bale"),
+                LocalDate.parse("2005-06-15"), 3L)).block();
+
+        movieInfoDeduplication.removeDuplicateMovieInfos();
+        mongoIndexInitializer.ensureIndexes();
+
+        // the most recently updated one is kept
+        StepVerifier.create(movieInfoRepository.findByName("Batman Begins"))
+                .assertNext(movieInfo -> assertEquals("dup", movieInfo.getMovieInfoId()))
+                .verifyComplete();
+        StepVerifier.create(movieInfoRepository.findAll()).expectNextCount(3).verifyComplete();
+    }
+
     @Test
     void addMovieInfoWithId() {
 
@@ -127,6 +209,58 @@ class MoviesInfoControllerIntegrationTest {
                 .hasSize(1);
     }
 
+    @Test
+    void getAllMovie_Pages() {
+        assertEquals(List.of("Batman Begins", "The Dark Knight", "Dark Knight Rises"), pageThrough("year"));
+        assertEquals(List.of("Batman Begins", "Dark Knight Rises", "The Dark Knight"), pageThrough("name"));
+        // string ids sort before the generated ObjectIds
+        assertEquals("Dark Knight Rises", pageThrough("id").get(0));
+        assertEquals(3, pageThrough("id").size());
+    }
+
+    private List<String> pageThrough(String sort) {
+        var names = new ArrayList<String>();
+        String after = null;
+        do {
+            var uri = UriComponentsBuilder.fromUriString(BASE_URL)
+                    .queryParam("sort", sort)
+                    .queryParam("limit", 1)
+                    .queryParamIfPresent("after", Optional.ofNullable(after))
+                    .buildAndExpand().toUri();
+            var result = webTestClient.get()
+                    .uri(uri)
+                    .exchange()
+                    .expectStatus()
+                    .is2xxSuccessful()
+                    .expectBodyList(MovieInfo.class)
+                    .hasSize(1)
+                    .returnResult();
+            result.getResponseBody().forEach(movieInfo -> names.add(movieInfo.getName()));
+            after = result.getResponseHeaders().getFirst(MoviesInfoController.NEXT_CURSOR_HEADER);
+        } while (after != null);
+        return names;
+    }
+
+    @Test
+    void getAllMovie_CursorOfOtherSort() {
+        var nextCursor = webTestClient.get()
+                .uri(BASE_URL + "?sort=name&limit=1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfo.class)
+                .getResponseHeaders()
+                .getFirst(MoviesInfoController.NEXT_CURSOR_HEADER);
+
+        webTestClient.get()
+                .uri(BASE_URL + "?sort=year&limit=1&after=" + nextCursor)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("after is not a valid cursor for sort year");
+    }
+
     @Test
     void getMovieById() {
         var movieInfoId = "abc";
@@ -144,9 +278,59 @@ class MoviesInfoControllerIntegrationTest {
 
     }
 
+    @Test
+    void getMovieById_Cached() {
+        webTestClient.get().uri(BASE_URL + "/{id}", "abc").exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieInfo.class)
+                .value(movieInfo -> assertEquals("Dark Knight Rises", movieInfo.getName()));
+
+        // a change that bypasses the service is not seen until the entry is evicted
+        var stored = movieInfoRepository.findById("abc").block();
+        stored.setName("The Dark Knight Rises");
+        movieInfoRepository.save(stored).block();
+        webTestClient.get().uri(BASE_URL + "/{id}", "abc").exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieInfo.class)
+                .value(movieInfo -> assertEquals("Dark Knight Rises", movieInfo.getName()));
+
+        // while an update through the service evicts it
+        stored.setVersion(null);
+        webTestClient.put().uri(BASE_URL + "/{id}", "abc").bodyValue(stored).exchange()
+                .expectStatus().isOk();
+        webTestClient.get().uri(BASE_URL + "/{id}", "abc").exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieInfo.class)
+                .value(movieInfo -> assertEquals("The Dark Knight Rises", movieInfo.getName()));
+
+        Mockito.when(moviesReviewRestClient.deleteReviews("abc")).thenReturn(Mono.empty());
+        webTestClient.delete().uri(BASE_URL + "/{id}", "abc").exchange()
+                .expectStatus().isNoContent();
+        webTestClient.get().uri(BASE_URL + "/{id}", "abc").exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void batchGetMovieInfos() {
+
+        webTestClient.post()
+                .uri(BASE_URL + ":batchGet")
+                .bodyValue(new MovieInfoBatchRequest(List.of("def", "abc"))).exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieInfoBatchResponse.class)
+                .consumeWith(batchResponseEntityExchangeResult -> {
+                    var batchResponse = batchResponseEntityExchangeResult.getResponseBody();
+                    assert batchResponse != null;
+                    assertEquals(1, batchResponse.getMovieInfos().size());
+                    assertEquals("Dark Knight Rises", batchResponse.getMovieInfos().get(0).getName());
+                    assertEquals(List.of("def"), batchResponse.getMissingIds());
+                });
+    }
+
     @Test
     void deleteMovieById() {
         var movieInfoId = "abc";
+        Mockito.when(moviesReviewRestClient.deleteReviews(movieInfoId)).thenReturn(Mono.empty());
 
         webTestClient.delete()
                 .uri(BASE_URL + "/{id}", movieInfoId)
@@ -160,6 +344,38 @@ class MoviesInfoControllerIntegrationTest {
                 .exchange()
                 .expectStatus()
                 .isNotFound();
+
+        Mockito.verify(moviesReviewRestClient).deleteReviews(movieInfoId);
+
+        webTestClient.delete()
+                .uri(BASE_URL + "/{id}", movieInfoId)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+
+        // the cascade is idempotent, and the 404 comes from the remove that found nothing to delete
+        Mockito.verify(moviesReviewRestClient, Mockito.times(2)).deleteReviews(movieInfoId);
+    }
+
+    @Test
+    void deleteMovieById_ReviewsNotDeleted() {
+        var movieInfoId = "abc";
+        Mockito.when(moviesReviewRestClient.deleteReviews(movieInfoId))
+                .thenReturn(Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "The reviews of movieInfo abc could not be deleted : movies-review-service is unavailable")));
+
+        webTestClient.delete()
+                .uri(BASE_URL + "/{id}", movieInfoId)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+
+        // still there, for the delete to be retried
+        webTestClient.get()
+                .uri(BASE_URL + "/{id}", movieInfoId)
+                .exchange()
+                .expectStatus()
+                .isOk();
     }
 
 
@@ -205,6 +421,124 @@ class MoviesInfoControllerIntegrationTest {
     }
 
 
+    @Test
+    void updatedMovieInfo_FieldsLeftOut() {
+
+        var updatedMovieInfo = new MovieInfo(null, "The Dark Knight Rises", 2012, null, null);
+
+        webTestClient.put()
+                .uri(BASE_URL + "/{id}", "abc")
+                .bodyValue(updatedMovieInfo).exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBody(MovieInfo.class)
+                .consumeWith(movieInfoEntityExchangeResult -> {
+                    var movieInfoReturn = movieInfoEntityExchangeResult.getResponseBody();
+                    assertEquals("The Dark Knight Rises", movieInfoReturn.getName());
+                    assertEquals(List.of("Christian Bale", "Tom Hardy"), movieInfoReturn.getCast());
+                    assertEquals(LocalDate.parse("2012-07-20"), movieInfoReturn.getRelease_date());
+                });
+    }
+
+    @Test
+    void updatedMovieInfo_Versioned() {
+
+        var movieInfo = new MovieInfo(null, "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy", "Anne Hathaway"), LocalDate.parse("2012-07-20"));
+
+        // the movieInfo was stored without a version, an update without one always applies
+        webTestClient.put()
+                .uri(BASE_URL + "/{id}", "abc")
+                .bodyValue(movieInfo).exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBody(MovieInfo.class)
+                .consumeWith(movieInfoEntityExchangeResult ->
+                        assertEquals(1L, movieInfoEntityExchangeResult.getResponseBody().getVersion()));
+
+        movieInfo.setVersion(1L);
+        webTestClient.put()
+                .uri(BASE_URL + "/{id}", "abc")
+                .bodyValue(movieInfo).exchange()
+                .expectStatus().is2xxSuccessful();
+
+        movieInfo.setVersion(1L);
+        movieInfo.setName("The Dark Knight Rises");
+        webTestClient.put()
+                .uri(BASE_URL + "/{id}", "abc")
+                .bodyValue(movieInfo).exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody(String.class).isEqualTo("movieInfo abc has been updated since version 1");
+
+        assertEquals("Dark Knight Rises", movieInfoRepository.findById("abc").block().getName());
+    }
+
+    @Test
+    void importMovieInfos() {
+
+        var lines = "{\"name\":\"Batman Begins\",\"year\":2005,\"cast\":[\"Christian Bale\",\"Liam Neeson\"]}\n"
+                + "{\"movieInfoId\":\"def\",\"name\":\"Batman Returns\",\"year\":1992,\"cast\":[\"Michael Keaton\"]}\n"
+                // the id of Dark Knight Rises, for a movie info that is not Dark Knight Rises
+                + "{\"movieInfoId\":\"abc\",\"name\":\"Batman Forever\",\"year\":1995,\"cast\":[\"Val Kilmer\"]}\n";
+
+        webTestClient.post()
+                .uri(BASE_URL + "/import")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(lines)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieInfoImportResult.class)
+                .isEqualTo(new MovieInfoImportResult(1, 1, 1));
+
+        var batmanBegins = movieInfoRepository.findByName("Batman Begins").collectList().block();
+        assertEquals(1, batmanBegins.size());
+        assertEquals(List.of("Christian Bale", "Liam Neeson"), batmanBegins.get(0).getCast());
+        assertEquals(LocalDate.parse("2005-06-15"), batmanBegins.get(0).getRelease_date());
+        assertEquals(1L, batmanBegins.get(0).getVersion());
+        assertEquals("Batman Returns", movieInfoRepository.findById("def").block().getName());
+        assertEquals("Dark Knight Rises", movieInfoRepository.findById("abc").block().getName());
+
+        // importing the same lines again changes nothing but the versions
+        webTestClient.post()
+                .uri(BASE_URL + "/import")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(lines)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieInfoImportResult.class)
+                .isEqualTo(new MovieInfoImportResult(0, 2, 1));
+    }
+
+    @Test
+    void exportMovieInfos() throws IOException {
+
+        // WebTestClient would decompress the body, and drop the Content-Encoding header with it
+        var body = HttpClient.create()
+                .headers(headers -> headers.add(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .get()
+                .uri("http://localhost:" + port + BASE_URL + "/export")
+                .responseSingle((response, content) -> {
+                    assertEquals(200, response.status().code());
+                    assertEquals("gzip", response.responseHeaders().get(HttpHeaders.CONTENT_ENCODING));
+                    return content.asByteArray();
+                })
+                .block();
+
+        try (var reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(body)), StandardCharsets.UTF_8))) {
+            var movieInfos = reader.lines()
+                    .map(line -> {
+                        try {
+                            return objectMapper.readValue(line, MovieInfo.class);
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    })
+                    .map(MovieInfo::getName)
+                    .sorted()
+                    .collect(Collectors.toList());
+            assertEquals(List.of("Batman Begins", "Dark Knight Rises", "The Dark Knight"), movieInfos);
+        }
+    }
+
     @Test
     void updatedMovieInfo_Not_Present() {
 
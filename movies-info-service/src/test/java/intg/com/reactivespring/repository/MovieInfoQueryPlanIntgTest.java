@@ -0,0 +1,103 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs every query of MovieInfoRepository and fails when Mongo would answer one of them with a collection scan,
+ * e.g. because a query changed and no longer matches an index declared on MovieInfo.
+ */
+@DataMongoTest
+@ActiveProfiles("test")
+@Import(MongoIndexInitializer.class)
+class MovieInfoQueryPlanIntgTest {
+
+    @TestConfiguration
+    static class QueryPlanConfig {
+
+        @Bean
+        QueryPlanRecorder queryPlanRecorder() {
+            return new QueryPlanRecorder();
+        }
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer queryPlanRecorderCustomizer(QueryPlanRecorder queryPlanRecorder) {
+            return settings -> settings.addCommandListener(queryPlanRecorder);
+        }
+    }
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    ReactiveMongoOperations mongoOperations;
+
+    @Autowired
+    QueryPlanRecorder queryPlanRecorder;
+
+    @BeforeEach
+    void setUp() {
+        var moviesList = List.of(new MovieInfo(null, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo(null, "The Dark Knight",
+                        2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")),
+                new MovieInfo("abc", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+        movieInfoRepository.saveAll(moviesList).blockLast();
+        queryPlanRecorder.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    void queriesUseIndexes() {
+        var objectId = new ObjectId().toHexString();
+
+        movieInfoRepository.findById("abc").block();
+        movieInfoRepository.findAllById(List.of("abc", objectId)).blockLast();
+        movieInfoRepository.findByYear(2005).blockLast();
+        movieInfoRepository.findByName("Batman Begins").blockLast();
+        var update = new MovieInfo(null, "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+        movieInfoRepository.updateMovieInfo("abc", update).block();
+        update.setVersion(1L);
+        movieInfoRepository.updateMovieInfo("abc", update).block();
+        movieInfoRepository.deleteMovieInfoById(objectId).block();
+        movieInfoRepository.upsertMovieInfos(List.of(update, new MovieInfo(objectId, "Batman Returns",
+                1992, List.of("Michael Keaton"), LocalDate.parse("1992-06-19")))).block();
+        for (var sortField : List.of("movieInfoId", "year", "name")) {
+            movieInfoRepository.findMovieInfoPage(null, sortField, null, null, 2).blockLast();
+            movieInfoRepository.findMovieInfoPage(2005, sortField, null, null, 2).blockLast();
+        }
+        for (var afterId : List.of("abc", objectId)) {
+            movieInfoRepository.findMovieInfoPage(null, "movieInfoId", null, afterId, 2).blockLast();
+            movieInfoRepository.findMovieInfoPage(null, "year", 2005, afterId, 2).blockLast();
+            movieInfoRepository.findMovieInfoPage(null, "name", "Batman Begins", afterId, 2).blockLast();
+            movieInfoRepository.findMovieInfoPage(2005, "movieInfoId", null, afterId, 2).blockLast();
+            movieInfoRepository.findMovieInfoPage(2005, "name", "Batman Begins", afterId, 2).blockLast();
+        }
+
+        assertFalse(queryPlanRecorder.getReads().isEmpty());
+        assertEquals(List.of(), queryPlanRecorder.collectionScans(mongoOperations));
+    }
+}
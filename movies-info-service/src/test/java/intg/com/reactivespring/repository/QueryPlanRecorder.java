@@ -0,0 +1,124 @@
+package com.reactivespring.repository;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Records the reads, updates and deletes the application sends to Mongo, to explain them afterwards
+ * and find the ones whose winning plan scans the whole collection. Commands without a filter or sort are not
+ * recorded, they touch every document anyway.
+ */
+class QueryPlanRecorder implements CommandListener {
+
+    private static final Map<String, String> FILTER_FIELDS = Map.of(
+            "find", "filter",
+            "count", "query",
+            "distinct", "query",
+            "findAndModify", "query");
+
+    private final List<BsonDocument> reads = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        var command = event.getCommand();
+        if ("update".equals(event.getCommandName())) {
+            // the statements of one bulk write share their filter shape, the first one stands for all of them
+            var updates = command.getArray("updates", new BsonArray());
+            if (!updates.isEmpty() && isNonEmptyDocument(updates.get(0).asDocument().get("q"))) {
+                reads.add(command.clone().append("updates", new BsonArray(List.of(updates.get(0)))));
+            }
+        } else if (filtersOrSorts(event.getCommandName(), command)) {
+            reads.add(command.clone());
+        }
+    }
+
+    List<BsonDocument> getReads() {
+        return reads;
+    }
+
+    void clear() {
+        reads.clear();
+    }
+
+    /**
+     * The recorded reads whose winning plan has a COLLSCAN stage.
+     */
+    List<String> collectionScans(ReactiveMongoOperations mongoOperations) {
+        return reads.stream()
+                .filter(read -> scansCollection(explain(mongoOperations, read), false))
+                .map(BsonDocument::toJson)
+                .collect(Collectors.toList());
+    }
+
+    private static boolean filtersOrSorts(String commandName, BsonDocument command) {
+        if ("aggregate".equals(commandName)) {
+            var pipeline = command.getArray("pipeline", new BsonArray());
+            return !pipeline.isEmpty() && (pipeline.get(0).asDocument().containsKey("$match")
+                    || pipeline.get(0).asDocument().containsKey("$sort"));
+        }
+        if ("delete".equals(commandName)) {
+            var deletes = command.getArray("deletes", new BsonArray());
+            return deletes.size() == 1 && isNonEmptyDocument(deletes.get(0).asDocument().get("q"));
+        }
+        var filterField = FILTER_FIELDS.get(commandName);
+        return filterField != null && (isNonEmptyDocument(command.get(filterField))
+                || isNonEmptyDocument(command.get("sort")));
+    }
+
+    private static boolean isNonEmptyDocument(BsonValue value) {
+        return value != null && value.isDocument() && !value.asDocument().isEmpty();
+    }
+
+    private static Document explain(ReactiveMongoOperations mongoOperations, BsonDocument read) {
+        var explained = new BsonDocument();
+        // session, cluster time and database are sent as fields of the command, but are not part of it
+        read.forEach((key, value) -> {
+            if (!key.startsWith("$") && !"lsid".equals(key)) {
+                explained.put(key, value);
+            }
+        });
+        BsonDocument explainCommand;
+        if (explained.containsKey("aggregate")) {
+            // older servers, like the embedded one, only explain an aggregate through its own explain option
+            explained.remove("cursor");
+            explainCommand = explained.append("explain", BsonBoolean.TRUE);
+        } else {
+            explainCommand = new BsonDocument("explain", explained).append("verbosity", new BsonString("queryPlanner"));
+        }
+        return mongoOperations.executeCommand(explainCommand.toJson()).block(Duration.ofSeconds(10));
+    }
+
+    private static boolean scansCollection(Object node, boolean inWinningPlan) {
+        if (node instanceof Map) {
+            for (var entry : ((Map<?, ?>) node).entrySet()) {
+                var winning = inWinningPlan || "winningPlan".equals(entry.getKey());
+                if (winning && "stage".equals(entry.getKey()) && "COLLSCAN".equals(entry.getValue())) {
+                    return true;
+                }
+                if (scansCollection(entry.getValue(), winning)) {
+                    return true;
+                }
+            }
+        } else if (node instanceof List) {
+            for (var item : (List<?>) node) {
+                if (scansCollection(item, inWinningPlan)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
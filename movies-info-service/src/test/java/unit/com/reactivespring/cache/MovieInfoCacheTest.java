@@ -0,0 +1,143 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.deadline.Deadline;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.DeadlineExceededException;
+import com.reactivespring.repository.MovieInfoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MovieInfoCacheTest {
+
+    private final MovieInfoRepository movieInfoRepository = Mockito.mock(MovieInfoRepository.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final MovieInfo batmanBegins = new MovieInfo("abc", "Batman Begins",
+            2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+    private final MovieInfo theDarkKnight = new MovieInfo("def", "The Dark Knight",
+            2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18"));
+
+    private MovieInfoCache movieInfoCache;
+
+    @BeforeEach
+    void setUp() {
+        movieInfoCache = new MovieInfoCache(movieInfoRepository, meterRegistry, true, 100, Duration.ofMinutes(1),
+                Duration.ofSeconds(1));
+    }
+
+    @Test
+    void get_ServedFromCache() {
+
+        Mockito.when(movieInfoRepository.findById("abc")).thenReturn(Mono.just(batmanBegins));
+
+        StepVerifier.create(movieInfoCache.get("abc")).expectNext(batmanBegins).verifyComplete();
+        StepVerifier.create(movieInfoCache.get("abc")).expectNext(batmanBegins).verifyComplete();
+
+        Mockito.verify(movieInfoRepository, Mockito.times(1)).findById("abc");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "movieinfos").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "movieinfos").tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    void get_LoadsWithLoadTimeoutInsteadOfCallerDeadline() {
+
+        // the repository sends the remaining time of the Deadline in the context as maxTimeMS
+        Mockito.when(movieInfoRepository.findById("abc")).thenReturn(Deadline.current()
+                .filter(deadline -> deadline.isPresent() && deadline.get().remaining().toMillis() > 100)
+                .map(deadline -> batmanBegins));
+
+        StepVerifier.create(movieInfoCache.get("abc")
+                        .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofMillis(100)))))
+                .expectNext(batmanBegins)
+                .verifyComplete();
+    }
+
+    @Test
+    void get_EachCallerWaitsWithinItsOwnDeadline() {
+
+        Mockito.when(movieInfoRepository.findById("abc"))
+                .thenReturn(Mono.just(batmanBegins).delayElement(Duration.ofMillis(200)));
+
+        var shortBudget = movieInfoCache.get("abc")
+                .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofMillis(50))));
+        var longBudget = movieInfoCache.get("abc")
+                .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofSeconds(1))));
+
+        StepVerifier.create(shortBudget).expectError(DeadlineExceededException.class).verify();
+        StepVerifier.create(longBudget).expectNext(batmanBegins).verifyComplete();
+        Mockito.verify(movieInfoRepository, Mockito.times(1)).findById("abc");
+    }
+
+    @Test
+    void get_MissingNotCached() {
+
+        Mockito.when(movieInfoRepository.findById("abc")).thenReturn(Mono.empty());
+
+        StepVerifier.create(movieInfoCache.get("abc")).verifyComplete();
+        StepVerifier.create(movieInfoCache.get("abc")).verifyComplete();
+
+        Mockito.verify(movieInfoRepository, Mockito.times(2)).findById("abc");
+    }
+
+    @Test
+    void get_ReloadedAfterEvict() {
+
+        var updated = new MovieInfo("abc", "Batman Begins",
+                2005, List.of("Christian Bale", "Liam Neeson"), LocalDate.parse("2005-06-15"));
+        Mockito.when(movieInfoRepository.findById("abc"))
+                .thenReturn(Mono.just(batmanBegins))
+                .thenReturn(Mono.just(updated));
+
+        StepVerifier.create(movieInfoCache.get("abc")).expectNext(batmanBegins).verifyComplete();
+        movieInfoCache.evict("abc");
+        StepVerifier.create(movieInfoCache.get("abc")).expectNext(updated).verifyComplete();
+    }
+
+    @Test
+    void getAll_LoadsOnlyWhatIsNotCached() {
+
+        Mockito.when(movieInfoRepository.findById("abc")).thenReturn(Mono.just(batmanBegins));
+        Mockito.when(movieInfoRepository.findAllById(ArgumentMatchers.<Iterable<String>>any()))
+                .thenReturn(Flux.just(theDarkKnight));
+
+        StepVerifier.create(movieInfoCache.get("abc")).expectNext(batmanBegins).verifyComplete();
+        StepVerifier.create(movieInfoCache.getAll(List.of("abc", "def", "ghi")).collectList())
+                .assertNext(movieInfos -> assertEquals(Set.of(batmanBegins, theDarkKnight), Set.copyOf(movieInfos)))
+                .verifyComplete();
+
+        Mockito.verify(movieInfoRepository).findAllById(List.of("def", "ghi"));
+        StepVerifier.create(movieInfoCache.get("def")).expectNext(theDarkKnight).verifyComplete();
+        Mockito.verify(movieInfoRepository, Mockito.never()).findById("def");
+    }
+
+    @Test
+    void get_Disabled() {
+
+        movieInfoCache = new MovieInfoCache(movieInfoRepository, meterRegistry, false, 100, Duration.ofMinutes(1),
+                Duration.ofSeconds(1));
+        Mockito.when(movieInfoRepository.findById("abc")).thenReturn(Mono.just(batmanBegins));
+
+        StepVerifier.create(movieInfoCache.get("abc")).expectNext(batmanBegins).verifyComplete();
+        StepVerifier.create(movieInfoCache.get("abc")).expectNext(batmanBegins).verifyComplete();
+
+        Mockito.verify(movieInfoRepository, Mockito.times(2)).findById("abc");
+    }
+}
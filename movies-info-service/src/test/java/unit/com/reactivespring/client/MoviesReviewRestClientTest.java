@@ -0,0 +1,79 @@
+package com.reactivespring.client;
+
+import com.reactivespring.deadline.Deadline;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoviesReviewRestClientTest {
+
+    private final AtomicReference<ClientRequest> sentRequest = new AtomicReference<>();
+
+    @Test
+    void deleteReviews_PropagatesDeadline() {
+
+        var deleted = client(Mono.just(ClientResponse.create(HttpStatus.NO_CONTENT).build())).deleteReviews("abc")
+                .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofSeconds(2))));
+
+        StepVerifier.create(deleted).verifyComplete();
+        assertEquals(URI.create("http://localhost:8081/v1/reviews?movieInfoId=abc"), sentRequest.get().url());
+        var budget = Long.parseLong(sentRequest.get().headers().getFirst(Deadline.BUDGET_HEADER));
+        assertTrue(budget > 0 && budget <= 2000);
+    }
+
+    @Test
+    void deleteReviews_ServerError() {
+
+        StepVerifier.create(client(Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build()))
+                        .deleteReviews("abc"))
+                .expectErrorSatisfies(ex -> assertEquals(HttpStatus.BAD_GATEWAY,
+                        ((ResponseStatusException) ex).getStatus()))
+                .verify();
+    }
+
+    @Test
+    void deleteReviews_Unavailable() {
+
+        StepVerifier.create(client(Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build()))
+                        .deleteReviews("abc"))
+                .expectErrorSatisfies(ex -> assertEquals(HttpStatus.SERVICE_UNAVAILABLE,
+                        ((ResponseStatusException) ex).getStatus()))
+                .verify();
+
+        var refused = Mono.<ClientResponse>error(new WebClientRequestException(new ConnectException("Connection refused"),
+                HttpMethod.DELETE, URI.create("http://localhost:8081/v1/reviews"), new HttpHeaders()));
+        StepVerifier.create(client(refused).deleteReviews("abc"))
+                .expectErrorSatisfies(ex -> assertEquals(HttpStatus.SERVICE_UNAVAILABLE,
+                        ((ResponseStatusException) ex).getStatus()))
+                .verify();
+    }
+
+    private MoviesReviewRestClient client(Mono<ClientResponse> response) {
+        var webClientBuilder = WebClient.builder()
+                .exchangeFunction(request -> {
+                    sentRequest.set(request);
+                    return response;
+                });
+        var client = new MoviesReviewRestClient(webClientBuilder, Duration.ofSeconds(1), Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(client, "moviesReviewUrl", "http://localhost:8081/v1/reviews");
+        return client;
+    }
+}
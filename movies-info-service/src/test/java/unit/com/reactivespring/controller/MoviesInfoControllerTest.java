@@ -1,6 +1,11 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.deadline.Deadline;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchRequest;
+import com.reactivespring.domain.MovieInfoBatchResponse;
+import com.reactivespring.domain.MovieInfoImportResult;
+import com.reactivespring.domain.MovieInfoPage;
 import com.reactivespring.service.MovieInfoService;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
@@ -9,9 +14,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -96,11 +105,115 @@ class MoviesInfoControllerTest {
                 });
     }
 
+    @Test
+    void getMovieInfoById_DeadlineExceeded() {
+
+        Mockito.when(movieInfoService.getMovieById("abc")).thenReturn(Mono.never());
+
+        webTestClient.get()
+                .uri(BASE_URL + "/{id}", "abc")
+                .header(Deadline.BUDGET_HEADER, "100")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT)
+                .expectBody(String.class).isEqualTo("Request deadline of 100ms exceeded");
+    }
+
+    @Test
+    void batchGetMovieInfos() {
+
+        var movieInfo = new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+        Mockito.when(movieInfoService.getMoviesByIds(List.of("abc", "def")))
+                .thenReturn(Mono.just(new MovieInfoBatchResponse(List.of(movieInfo), List.of("def"))));
+
+        webTestClient.post()
+                .uri(BASE_URL + ":batchGet")
+                .bodyValue(new MovieInfoBatchRequest(List.of("abc", "def"))).exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieInfoBatchResponse.class)
+                .consumeWith(batchResponseEntityExchangeResult -> {
+                    var batchResponse = batchResponseEntityExchangeResult.getResponseBody();
+                    assert batchResponse != null;
+                    assertEquals(1, batchResponse.getMovieInfos().size());
+                    assertEquals(List.of("def"), batchResponse.getMissingIds());
+                });
+    }
+
+    @Test
+    void batchGetMovieInfos_Validation() {
+
+        webTestClient.post()
+                .uri(BASE_URL + ":batchGet")
+                .bodyValue(new MovieInfoBatchRequest(List.of())).exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("movieInfoBatchRequest.ids must be present");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importMovieInfos() {
+
+        Mockito.when(movieInfoService.importMovieInfos(ArgumentMatchers.any()))
+                .thenAnswer(invocation -> ((Flux<MovieInfo>) invocation.getArgument(0)).count()
+                        .map(count -> new MovieInfoImportResult(count, 0, 0)));
+
+        webTestClient.post()
+                .uri(BASE_URL + "/import")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue("{\"name\":\"Batman Begins\",\"year\":2005,\"cast\":[\"Christian Bale\"]}\n"
+                        + "{\"name\":\"The Dark Knight\",\"year\":2008,\"cast\":[\"Christian Bale\"]}\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieInfoImportResult.class)
+                .isEqualTo(new MovieInfoImportResult(2, 0, 0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importMovieInfos_Validation() {
+
+        Mockito.when(movieInfoService.importMovieInfos(ArgumentMatchers.any()))
+                .thenAnswer(invocation -> ((Flux<MovieInfo>) invocation.getArgument(0)).count()
+                        .map(count -> new MovieInfoImportResult(count, 0, 0)));
+
+        webTestClient.post()
+                .uri(BASE_URL + "/import")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue("{\"name\":\"Batman Begins\",\"year\":2005,\"cast\":[\"Christian Bale\"]}\n"
+                        + "{\"name\":\"\",\"year\":2008,\"cast\":[\"Christian Bale\"]}\n")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("movieInfo.name must be  present");
+    }
+
+    @Test
+    void exportMovieInfos() {
+
+        Mockito.when(movieInfoService.exportMovieInfos()).thenReturn(Flux.just(
+                new MovieInfo("abc", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")),
+                new MovieInfo("def", "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"))));
+
+        webTestClient.get()
+                .uri(BASE_URL + "/export")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(MovieInfo.class)
+                .getResponseBody()
+                .map(MovieInfo::getMovieInfoId)
+                .as(StepVerifier::create)
+                .expectNext("abc", "def")
+                .verifyComplete();
+    }
+
     @Test
     void delete() {
 
         var movieInfoId = "abc";
-        Mockito.when(movieInfoService.deleteMovieById(Mockito.anyString())).thenReturn(Mono.empty());
+        Mockito.when(movieInfoService.deleteMovieById(Mockito.anyString())).thenReturn(Mono.just(true));
         webTestClient.delete()
                 .uri(BASE_URL + "/{id}", movieInfoId)
                 .exchange()
@@ -108,6 +221,17 @@ class MoviesInfoControllerTest {
                 .isNoContent();
     }
 
+    @Test
+    void delete_NotFound() {
+
+        Mockito.when(movieInfoService.deleteMovieById("def")).thenReturn(Mono.just(false));
+        webTestClient.delete()
+                .uri(BASE_URL + "/{id}", "def")
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
     @Test
     void getAllMovie() {
 
@@ -117,17 +241,53 @@ class MoviesInfoControllerTest {
                         2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")),
                 new MovieInfo("abc", "Dark Knight Rises",
                         2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
-        Mockito.when(movieInfoService.getAllMovies()).thenReturn(Flux.fromIterable(moviesList));
+        Mockito.when(movieInfoService.getMovieInfoPage(null, "id", null, null))
+                .thenReturn(Mono.just(new MovieInfoPage(moviesList, null)));
 
         webTestClient.get()
                 .uri(BASE_URL)
                 .exchange()
                 .expectStatus()
                 .is2xxSuccessful()
+                .expectHeader().doesNotExist(MoviesInfoController.NEXT_CURSOR_HEADER)
                 .expectBodyList(MovieInfo.class)
                 .hasSize(3);
     }
 
+    @Test
+    void getAllMovie_NextPage() {
+
+        var moviesList = List.of(new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+        Mockito.when(movieInfoService.getMovieInfoPage(2012, "name", 1, "cursor1"))
+                .thenReturn(Mono.just(new MovieInfoPage(moviesList, "cursor2")));
+
+        webTestClient.get()
+                .uri(BASE_URL + "?year=2012&sort=name&limit=1&after=cursor1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().valueEquals(MoviesInfoController.NEXT_CURSOR_HEADER, "cursor2")
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void getAllMovie_InvalidSort() {
+
+        Mockito.when(movieInfoService.getMovieInfoPage(null, "cast", null, null))
+                .thenReturn(Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "sort must be one of id, year, name")));
+
+        webTestClient.get()
+                .uri(BASE_URL + "?sort=cast")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("sort must be one of id, year, name");
+    }
+
 
     @Test
     void updatedMovieInfo() {
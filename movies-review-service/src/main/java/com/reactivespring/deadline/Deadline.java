@@ -0,0 +1,40 @@
+package com.reactivespring.deadline;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Point in time by which the request being served has to be answered. It travels in the Reactor Context and
+ * crosses service boundaries as the remaining budget in milliseconds, so clock skew between hosts doesn't matter.
+ */
+public final class Deadline {
+
+    public static final String BUDGET_HEADER = "X-Request-Budget-Ms";
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos());
+    }
+
+    /**
+     * The deadline of the request whose pipeline this is subscribed in, empty outside of one.
+     */
+    public static Mono<Optional<Deadline>> current() {
+        return Mono.deferContextual(context -> Mono.just(context.getOrEmpty(Deadline.class)));
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(expiresAtNanos - System.nanoTime(), 0));
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+}
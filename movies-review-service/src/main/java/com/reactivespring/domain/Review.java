@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.Min;
@@ -13,14 +14,24 @@ import javax.validation.constraints.NotNull;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document
+// serves the top reviews of a movie by rating straight from the index, without sorting
+@CompoundIndex(name = "movieInfoId_rating", def = "{'movieInfoId': 1, 'rating': -1, '_id': -1}")
+// serves the pages of a movie's reviews, see ReviewReactiveRepositoryCustom#findReviewsPage
+@CompoundIndex(name = "movieInfoId_id", def = "{'movieInfoId': 1, '_id': 1}")
 public class Review {
 
     @Id
     private String reviewId;
     @NotNull(message = "review.movieInfoId must not be null")
-    private Long movieInfoId;
+    private String movieInfoId;
     @NotNull(message = "review.comment must not be null")
     private String comment;
     @Min(value = 0L, message = "rating.negative : please pass a non-negative value")
     private Double rating;
+    // incremented by every update; an update that carries a version only applies while it still matches
+    private Long version;
+
+    public Review(String reviewId, String movieInfoId, String comment, Double rating) {
+        this(reviewId, movieInfoId, comment, rating, null);
+    }
 }
@@ -0,0 +1,38 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The outcome of one review of a POST /v1/reviews/batch request, index being its position in the request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReviewBatchResult {
+
+    public enum Status {
+        // INVALID reviews failed validation, FAILED ones were valid but Mongo did not insert them
+        CREATED, INVALID, FAILED
+    }
+
+    private long index;
+    private Status status;
+    private String reviewId;
+    private String error;
+
+    public static ReviewBatchResult created(long index, String reviewId) {
+        return new ReviewBatchResult(index, Status.CREATED, reviewId, null);
+    }
+
+    public static ReviewBatchResult invalid(long index, String error) {
+        return new ReviewBatchResult(index, Status.INVALID, null, error);
+    }
+
+    public static ReviewBatchResult failed(long index, String error) {
+        return new ReviewBatchResult(index, Status.FAILED, null, error);
+    }
+}
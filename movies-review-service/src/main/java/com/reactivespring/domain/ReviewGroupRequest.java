@@ -0,0 +1,24 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewGroupRequest {
+
+    @NotEmpty(message = "reviewGroupRequest.movieInfoIds must be present")
+    @Size(max = 500, message = "reviewGroupRequest.movieInfoIds must not contain more than 500 ids")
+    private List<@NotBlank(message = "reviewGroupRequest.movieInfoIds must not contain blank ids") String> movieInfoIds;
+    // optional, reviews.grouped.default-per-movie when absent and capped at reviews.grouped.max-per-movie
+    @Positive(message = "reviewGroupRequest.limitPerMovie must be a positive value")
+    private Integer limitPerMovie;
+}
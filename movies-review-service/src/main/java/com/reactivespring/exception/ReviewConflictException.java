@@ -0,0 +1,8 @@
+package com.reactivespring.exception;
+
+public class ReviewConflictException extends RuntimeException {
+
+    public ReviewConflictException(String message) {
+        super(message);
+    }
+}
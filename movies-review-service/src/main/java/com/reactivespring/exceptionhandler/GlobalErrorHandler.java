@@ -1,10 +1,14 @@
 package com.reactivespring.exceptionhandler;
 
+import com.reactivespring.exception.DeadlineExceededException;
+import com.reactivespring.exception.ReviewConflictException;
 import com.reactivespring.exception.ReviewDataException;
 import com.reactivespring.exception.ReviewNotFoundException;
+import com.reactivespring.exception.ReviewWriteRejectedException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.web.reactive.error.ErrorWebExceptionHandler;
 import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
@@ -25,6 +29,22 @@ public class GlobalErrorHandler implements ErrorWebExceptionHandler {
             return exchange.getResponse().writeWith(Mono.just(errorMessage));
         }
 
+        if (ex instanceof ReviewConflictException) {
+            exchange.getResponse().setStatusCode(HttpStatus.CONFLICT);
+            return exchange.getResponse().writeWith(Mono.just(errorMessage));
+        }
+
+        if (ex instanceof DeadlineExceededException) {
+            exchange.getResponse().setStatusCode(HttpStatus.GATEWAY_TIMEOUT);
+            return exchange.getResponse().writeWith(Mono.just(errorMessage));
+        }
+
+        if (ex instanceof ReviewWriteRejectedException) {
+            exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+            return exchange.getResponse().writeWith(Mono.just(errorMessage));
+        }
+
         if (ex instanceof ReviewDataException) {
             exchange.getResponse().setStatusCode(HttpStatus.BAD_REQUEST);
             return exchange.getResponse().writeWith(Mono.just(errorMessage));
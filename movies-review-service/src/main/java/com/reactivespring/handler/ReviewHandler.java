@@ -2,98 +2,325 @@ package com.reactivespring.handler;
 
 
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewBatchResult;
+import com.reactivespring.domain.ReviewGroup;
+import com.reactivespring.domain.ReviewGroupRequest;
+import com.reactivespring.exception.ReviewConflictException;
 import com.reactivespring.exception.ReviewDataException;
 import com.reactivespring.exception.ReviewNotFoundException;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewWriteCoalescer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 public class ReviewHandler {
 
+    private static final Set<String> REVIEW_QUERY_PARAMS = Set.of("movieInfoId", "limit", "after");
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final int DEFAULT_TOP_REVIEWS = 5;
+
+    private static final int MAX_TOP_REVIEWS = 50;
+
+    private static final Map<String, Sort> TOP_REVIEWS_ORDERS = Map.of(
+            "rating", Sort.by(Sort.Direction.DESC, "rating", "reviewId"),
+            // generated ids are ObjectIds, which start with their creation time
+            "recent", Sort.by(Sort.Direction.DESC, "reviewId"));
 
     private final ReviewReactiveRepository reviewReactiveRepository;
+    private final ReviewWriteCoalescer reviewWriteCoalescer;
     @Autowired
     private Validator validator;
 
-    public ReviewHandler(ReviewReactiveRepository reviewReactiveRepository) {
+    @Value("${reviews.batch.chunk-size:500}")
+    private int batchChunkSize;
+
+    @Value("${reviews.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${reviews.page.max-size:100}")
+    private int maxPageSize;
+
+    @Value("${reviews.grouped.default-per-movie:20}")
+    private int defaultReviewsPerMovie;
+
+    @Value("${reviews.grouped.max-per-movie:100}")
+    private int maxReviewsPerMovie;
+
+    public ReviewHandler(ReviewReactiveRepository reviewReactiveRepository, ReviewWriteCoalescer reviewWriteCoalescer) {
         this.reviewReactiveRepository = reviewReactiveRepository;
+        this.reviewWriteCoalescer = reviewWriteCoalescer;
     }
 
     public Mono<ServerResponse> addReview(ServerRequest request) {
         return request.bodyToMono(Review.class)
                 .doOnNext(this::validate)
-                .flatMap(reviewReactiveRepository::save)
+                .doOnNext(review -> review.setVersion(0L))
+                .flatMap(reviewWriteCoalescer::save)
                 .flatMap(ServerResponse.status(HttpStatus.CREATED)::bodyValue);
     }
 
-    private void validate(Review review) {
+    private <T> void validate(T value) {
 
-        var constraintViolation = validator.validate(review);
-        log.info(" Constraint violation : {} ", constraintViolation);
-        if (constraintViolation.size() > 0) {
-            var errorMessage = constraintViolation.stream()
-                    .map(ConstraintViolation::getMessage)
-                    .sorted()
-                    .collect(Collectors.joining(","));
-            log.info(" Constraint violation Messages : {} ", errorMessage);
+        var errorMessage = constraintViolations(value);
+        if (errorMessage != null) {
             throw new ReviewDataException(errorMessage);
         }
 
     }
 
+    /**
+     * The messages of the violated constraints of value, null when it is valid.
+     */
+    private <T> String constraintViolations(T value) {
+        var constraintViolation = validator.validate(value);
+        log.info(" Constraint violation : {} ", constraintViolation);
+        if (constraintViolation.isEmpty()) {
+            return null;
+        }
+        var errorMessage = constraintViolation.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(","));
+        log.info(" Constraint violation Messages : {} ", errorMessage);
+        return errorMessage;
+    }
+
+    /**
+     * Adds a stream of reviews, NDJSON or a JSON array, and answers one ReviewBatchResult per review as NDJSON, in
+     * the order of the request. Valid reviews are written with one insertMany per reviews.batch.chunk-size reviews
+     * of the request; the request is read no faster than the chunks are written.
+     */
+    public Mono<ServerResponse> addReviews(ServerRequest serverRequest) {
+        var results = serverRequest.bodyToFlux(Review.class)
+                .index()
+                .buffer(batchChunkSize)
+                .concatMap(this::addReviewChunk);
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(results, ReviewBatchResult.class);
+    }
+
+    private Flux<ReviewBatchResult> addReviewChunk(List<Tuple2<Long, Review>> chunk) {
+        var results = new ReviewBatchResult[chunk.size()];
+        var validReviews = new ArrayList<Review>();
+        var validPositions = new ArrayList<Integer>();
+        for (var position = 0; position < chunk.size(); position++) {
+            var review = chunk.get(position).getT2();
+            var errorMessage = constraintViolations(review);
+            if (errorMessage != null) {
+                results[position] = ReviewBatchResult.invalid(chunk.get(position).getT1(), errorMessage);
+            } else {
+                review.setVersion(0L);
+                validReviews.add(review);
+                validPositions.add(position);
+            }
+        }
+        if (validReviews.isEmpty()) {
+            return Flux.fromArray(results);
+        }
+        return reviewReactiveRepository.insertReviews(validReviews)
+                .flatMapIterable(writeErrors -> {
+                    for (var i = 0; i < validReviews.size(); i++) {
+                        var position = validPositions.get(i);
+                        var index = chunk.get(position).getT1();
+                        var writeError = writeErrors.get(i);
+                        results[position] = writeError == null
+                                ? ReviewBatchResult.created(index, validReviews.get(i).getReviewId())
+                                : ReviewBatchResult.failed(index, writeError.getMessage());
+                    }
+                    return Arrays.asList(results);
+                });
+    }
+
 
     public Mono<ServerResponse> updateReview(ServerRequest serverRequest) {
 
         var reviewId = serverRequest.pathVariable("id");
         log.info(" update reviewId - {} ", reviewId);
-        // var existingReview = reviewReactiveRepository.findById(reviewId);
-
-        return reviewReactiveRepository.findById(reviewId).flatMap(review -> serverRequest.bodyToMono(Review.class)
-                        .map(requestReview -> {
-                            review.setComment(requestReview.getComment());
-                            review.setRating(requestReview.getRating());
-                            return review;
-                        }).flatMap(reviewReactiveRepository::save)
-                        .flatMap(ServerResponse.ok()::bodyValue))
+
+        return serverRequest.bodyToMono(Review.class)
+                .doOnNext(this::validate)
+                .flatMap(requestReview -> reviewReactiveRepository.updateReview(reviewId, requestReview)
+                        .switchIfEmpty(Mono.defer(() -> reviewNotUpdated(reviewId, requestReview))))
+                .flatMap(ServerResponse.ok()::bodyValue)
                 .switchIfEmpty(Mono.error(new ReviewNotFoundException("Review not found for reviewId - " + reviewId)));
 
     }
 
+    private Mono<Review> reviewNotUpdated(String reviewId, Review requestReview) {
+        if (requestReview.getVersion() == null) {
+            return Mono.empty();
+        }
+        // only a failed update pays for the second round trip that tells a conflict from a missing review
+        return reviewReactiveRepository.existsById(reviewId)
+                .flatMap(exists -> exists
+                        ? Mono.error(new ReviewConflictException("Review " + reviewId
+                        + " has been updated since version " + requestReview.getVersion()))
+                        : Mono.empty());
+    }
+
     public Mono<ServerResponse> deleteReview(ServerRequest serverRequest) {
         var reviewId = serverRequest.pathVariable("id");
         log.info(" delete reviewId - {} ", reviewId);
-        return reviewReactiveRepository.findById(reviewId).flatMap(review ->
-                reviewReactiveRepository.deleteById(reviewId)
-        ).then(ServerResponse.notFound().build());
+        return reviewReactiveRepository.deleteReviewById(reviewId)
+                .flatMap(deleted -> deleted
+                        ? ServerResponse.noContent().build()
+                        : Mono.error(new ReviewNotFoundException("Review not found for reviewId - " + reviewId)));
+
+    }
 
+    /**
+     * Deletes all reviews of a movie, e.g. when movies-info-service deletes the movie. Answers 204 even when there
+     * were none, so that a retried delete succeeds.
+     */
+    public Mono<ServerResponse> deleteReviews(ServerRequest serverRequest) {
+        // without a movieInfoId this must never delete every review
+        var movieInfoId = serverRequest.queryParam("movieInfoId")
+                .filter(id -> !id.isBlank());
+        if (movieInfoId.isEmpty()) {
+            return Mono.error(new ReviewDataException("movieInfoId must be present"));
+        }
+        return reviewReactiveRepository.deleteReviewsByMovieInfoId(movieInfoId.get())
+                .doOnNext(deletedCount -> log.info(" deleted {} reviews of movieInfoId - {} ", deletedCount,
+                        movieInfoId.get()))
+                .then(ServerResponse.noContent().build());
     }
 
     public Mono<ServerResponse> getAllReview(ServerRequest serverRequest) {
-        var movieInfoId = serverRequest.queryParam("movieInfoId");
-        if (movieInfoId.isPresent()) {
-            var reviews = reviewReactiveRepository.findReviewsByMovieInfoId(Long.valueOf(movieInfoId.get()));
-            return buildReviewsResponse(reviews);
-        } else {
-            var reviews = reviewReactiveRepository.findAll();
-            return buildReviewsResponse(reviews);
+        // an unknown filter must never fall through to listing the reviews of every movie
+        var unsupportedParams = serverRequest.queryParams().keySet().stream()
+                .filter(param -> !REVIEW_QUERY_PARAMS.contains(param))
+                .sorted()
+                .collect(Collectors.joining(","));
+        if (!unsupportedParams.isEmpty()) {
+            return Mono.error(new ReviewDataException("Unsupported query parameter(s) : " + unsupportedParams));
         }
+
+        // every review of a movie, or of every movie, at once is never an option, they come one page at a time
+        return getReviewsPage(serverRequest, serverRequest.queryParam("movieInfoId").orElse(null));
     }
 
-    private Mono<ServerResponse> buildReviewsResponse(Flux<Review> reviews) {
-        return ServerResponse.ok()
-                .body(reviews, Review.class);
+    /**
+     * One page of reviews in reviewId order. The X-Next-Cursor header carries the value to pass as after for the
+     * next page, and is absent on the last one. limit is capped at reviews.page.max-size.
+     */
+    private Mono<ServerResponse> getReviewsPage(ServerRequest serverRequest, String movieInfoId) {
+        int limit;
+        try {
+            limit = serverRequest.queryParam("limit").map(Integer::parseInt).orElse(defaultPageSize);
+        } catch (NumberFormatException ex) {
+            return Mono.error(new ReviewDataException("limit must be a number"));
+        }
+        if (limit <= 0) {
+            return Mono.error(new ReviewDataException("limit must be a positive value"));
+        }
+        var pageSize = Math.min(limit, maxPageSize);
+        String afterReviewId;
+        try {
+            afterReviewId = serverRequest.queryParam("after").map(ReviewHandler::decodeCursor).orElse(null);
+        } catch (IllegalArgumentException ex) {
+            return Mono.error(new ReviewDataException("after is not a valid cursor"));
+        }
+
+        // one more than asked for tells whether there is a next page
+        return reviewReactiveRepository.findReviewsPage(movieInfoId, afterReviewId, pageSize + 1)
+                .collectList()
+                .flatMap(reviews -> {
+                    var response = listResponse(serverRequest);
+                    if (reviews.size() <= pageSize) {
+                        return response.body(Flux.fromIterable(reviews), Review.class);
+                    }
+                    var page = reviews.subList(0, pageSize);
+                    response.header(NEXT_CURSOR_HEADER, encodeCursor(page.get(pageSize - 1).getReviewId()));
+                    return response.body(Flux.fromIterable(page), Review.class);
+                });
+    }
+
+    private static String encodeCursor(String reviewId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(reviewId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The reviews of several movies, limitPerMovie of each, reviews.grouped.default-per-movie when absent and at
+     * most reviews.grouped.max-per-movie.
+     */
+    public Mono<ServerResponse> getReviewsGroupedByMovieInfoId(ServerRequest serverRequest) {
+        return serverRequest.bodyToMono(ReviewGroupRequest.class)
+                .doOnNext(this::validate)
+                .flatMap(groupRequest -> {
+                    var limitPerMovie = groupRequest.getLimitPerMovie() != null
+                            ? Math.min(groupRequest.getLimitPerMovie(), maxReviewsPerMovie)
+                            : defaultReviewsPerMovie;
+                    return listResponse(serverRequest)
+                            .body(reviewReactiveRepository.findReviewGroupsByMovieInfoIds(
+                                    groupRequest.getMovieInfoIds(), limitPerMovie), ReviewGroup.class);
+                });
+    }
+
+    public Mono<ServerResponse> getReviewSummary(ServerRequest serverRequest) {
+        var movieInfoId = serverRequest.queryParam("movieInfoId")
+                .filter(id -> !id.isBlank());
+        if (movieInfoId.isEmpty()) {
+            return Mono.error(new ReviewDataException("movieInfoId must be present"));
+        }
+        int topReviews;
+        try {
+            topReviews = serverRequest.queryParam("top").map(Integer::parseInt).orElse(DEFAULT_TOP_REVIEWS);
+        } catch (NumberFormatException ex) {
+            return Mono.error(new ReviewDataException("top must be a number"));
+        }
+        if (topReviews < 0 || topReviews > MAX_TOP_REVIEWS) {
+            return Mono.error(new ReviewDataException("top must be between 0 and " + MAX_TOP_REVIEWS));
+        }
+        var orderBy = serverRequest.queryParam("orderBy").orElse("rating");
+        var topReviewsOrder = TOP_REVIEWS_ORDERS.get(orderBy);
+        if (topReviewsOrder == null) {
+            return Mono.error(new ReviewDataException("orderBy must be one of : rating,recent"));
+        }
+        return reviewReactiveRepository.findReviewSummary(movieInfoId.get(), topReviews, topReviewsOrder)
+                .flatMap(ServerResponse.ok()::bodyValue);
+    }
+
+    /**
+     * Lists go out as NDJSON when the caller asks for it by name: each element is written as soon as it is read
+     * from Mongo and only as fast as the caller consumes, and a caller that cancels stops the query. Otherwise as
+     * a JSON array.
+     */
+    private ServerResponse.BodyBuilder listResponse(ServerRequest serverRequest) {
+        var ndjsonAccepted = serverRequest.headers().accept().stream()
+                .anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+        return ndjsonAccepted
+                ? ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON)
+                : ServerResponse.ok();
     }
 
     public Mono<ServerResponse> getReviews(ServerRequest serverRequest) {
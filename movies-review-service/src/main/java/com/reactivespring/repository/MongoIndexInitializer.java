@@ -0,0 +1,68 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the indexes declared on the documents while the application starts, before it serves any request.
+ * A failure to create one fails the start, instead of leaving the queries that need it to scan the collection.
+ */
+@Component
+@Slf4j
+public class MongoIndexInitializer {
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+
+    // movieInfoId alone is a prefix of both compound indexes of Review, which serve its queries as well
+    private static final Map<Class<?>, List<String>> SUPERSEDED_INDEXES = Map.of(Review.class, List.of("movieInfoId"));
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    private final MongoMappingContext mappingContext;
+
+    public MongoIndexInitializer(ReactiveMongoOperations mongoOperations, MongoMappingContext mappingContext) {
+        this.mongoOperations = mongoOperations;
+        this.mappingContext = mappingContext;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void ensureIndexes() {
+        var indexResolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        Flux.fromIterable(mappingContext.getPersistentEntities())
+                .filter(entity -> entity.isAnnotationPresent(Document.class))
+                .map(MongoPersistentEntity::getType)
+                .concatMap(type -> Flux.fromIterable(indexResolver.resolveIndexFor(type))
+                        .concatMap(index -> mongoOperations.indexOps(type).ensureIndex(index))
+                        .doOnNext(indexName -> log.info("Ensured index {} of {}", indexName, type.getSimpleName())))
+                .blockLast(TIMEOUT);
+        dropSupersededIndexes();
+    }
+
+    /**
+     * Only once the indexes that replace them exist, so the queries they served never go without one.
+     */
+    private void dropSupersededIndexes() {
+        Flux.fromIterable(SUPERSEDED_INDEXES.entrySet())
+                .concatMap(superseded -> mongoOperations.indexOps(superseded.getKey()).getIndexInfo()
+                        .map(IndexInfo::getName)
+                        .filter(superseded.getValue()::contains)
+                        .concatMap(indexName -> mongoOperations.indexOps(superseded.getKey()).dropIndex(indexName)
+                                .doOnSuccess(dropped -> log.info("Dropped superseded index {} of {}", indexName,
+                                        superseded.getKey().getSimpleName()))))
+                .blockLast(TIMEOUT);
+    }
+}
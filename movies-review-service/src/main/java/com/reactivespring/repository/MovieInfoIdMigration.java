@@ -0,0 +1,70 @@
+package com.reactivespring.repository;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.reactivespring.domain.Review;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Rewrites the movieInfoId of the reviews stored while it was a number as its string form, which is the only
+ * one the queries by movieInfoId match. Runs while the application starts and finds nothing left to do once every
+ * instance writes strings, so a restart after a rolling deploy also converts the reviews older instances wrote.
+ */
+@Component
+@Slf4j
+public class MovieInfoIdMigration {
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(10);
+
+    private static final int BATCH_SIZE = 500;
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public MovieInfoIdMigration(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void migrateNumericMovieInfoIds() {
+        var numericMovieInfoId = Filters.or(
+                Filters.type("movieInfoId", BsonType.INT64),
+                Filters.type("movieInfoId", BsonType.INT32));
+        var migrated = mongoOperations.getCollection(mongoOperations.getCollectionName(Review.class))
+                .flatMap(collection -> Flux.from(collection.find(numericMovieInfoId)
+                                .projection(Projections.include("movieInfoId")))
+                        .buffer(BATCH_SIZE)
+                        .concatMap(reviews -> Mono.from(collection.bulkWrite(toStringMovieInfoIds(reviews))))
+                        .reduce(0, (count, result) -> count + result.getModifiedCount()))
+                .block(TIMEOUT);
+        if (migrated != null && migrated > 0) {
+            log.info("Migrated the numeric movieInfoId of {} reviews to a string", migrated);
+        }
+    }
+
+    private static List<WriteModel<Document>> toStringMovieInfoIds(List<Document> reviews) {
+        return reviews.stream()
+                .map(review -> {
+                    var movieInfoId = review.get("movieInfoId");
+                    // matching the old value too leaves alone a review updated since it was read
+                    return new UpdateOneModel<Document>(
+                            Filters.and(Filters.eq("_id", review.get("_id")), Filters.eq("movieInfoId", movieInfoId)),
+                            Updates.set("movieInfoId", movieInfoId.toString()));
+                })
+                .collect(Collectors.toList());
+    }
+}
@@ -2,9 +2,11 @@ package com.reactivespring.repository;
 
 import com.reactivespring.domain.Review;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
-import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-public interface ReviewReactiveRepository extends ReactiveMongoRepository<Review, String> {
-    
-    Flux<Review> findReviewsByMovieInfoId(Long valueOf);
+public interface ReviewReactiveRepository extends ReactiveMongoRepository<Review, String>, ReviewReactiveRepositoryCustom {
+
+    // redeclared so that calls resolve to the deadline-aware ReviewReactiveRepositoryCustom#findById
+    @Override
+    Mono<Review> findById(String reviewId);
 }
@@ -0,0 +1,70 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewGroup;
+import com.reactivespring.domain.ReviewSummary;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads that take the request's deadline into account: the remaining budget is sent to Mongo as maxTimeMS,
+ * so the server stops working on a query nobody is waiting for anymore. findById, findAll and
+ * findReviewsByMovieInfoId replace the base and derived repository implementations.
+ */
+public interface ReviewReactiveRepositoryCustom {
+
+    Mono<Review> findById(String reviewId);
+
+    Flux<Review> findAll();
+
+    Flux<Review> findReviewsByMovieInfoId(String movieInfoId);
+
+    /**
+     * Sets the comment and rating of review on the stored one, the ones that are not null, and increments its
+     * version in a single findAndModify, and returns the updated review. When review carries a version the update
+     * only applies while the stored version still matches. Empty when nothing was updated.
+     */
+    Mono<Review> updateReview(String reviewId, Review review);
+
+    /**
+     * Inserts the reviews with one unordered insertMany, so that a review that cannot be inserted does not keep
+     * the others out. Returns the write errors by position in reviews, empty when all were inserted; a review
+     * whose reviewId is already taken gets a DuplicateKeyException. Reviews without a reviewId get the generated
+     * one set.
+     */
+    Mono<Map<Integer, DataIntegrityViolationException>> insertReviews(List<Review> reviews);
+
+    /**
+     * Deletes the review in a single round trip, true when there was one.
+     */
+    Mono<Boolean> deleteReviewById(String reviewId);
+
+    /**
+     * Deletes all reviews of the movie with one deleteMany, and returns how many there were.
+     */
+    Mono<Long> deleteReviewsByMovieInfoId(String movieInfoId);
+
+    /**
+     * Up to limit reviews in reviewId order, starting right after afterReviewId when given, of one movie when
+     * movieInfoId is given. The index is entered at the cursor, so a deep page costs the same as the first one.
+     */
+    Flux<Review> findReviewsPage(String movieInfoId, String afterReviewId, int limit);
+
+    /**
+     * The first limitPerMovie reviews in reviewId order of each movie that has reviews, with one aggregation; the
+     * groups come in no particular order.
+     */
+    Flux<ReviewGroup> findReviewGroupsByMovieInfoIds(Collection<String> movieInfoIds, int limitPerMovie);
+
+    /**
+     * Count, average and histogram of the ratings, aggregated in Mongo, along with the first topReviews reviews in
+     * topReviewsOrder; Mongo keeps no more than that many while sorting.
+     */
+    Mono<ReviewSummary> findReviewSummary(String movieInfoId, int topReviews, Sort topReviewsOrder);
+}
@@ -0,0 +1,232 @@
+package com.reactivespring.repository;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.result.DeleteResult;
+import com.reactivespring.deadline.Deadline;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewGroup;
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.exception.DeadlineExceededException;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+public class ReviewReactiveRepositoryImpl implements ReviewReactiveRepositoryCustom {
+
+    // maxTimeMS of 0 means no limit, so an exhausted budget still gets the smallest one Mongo accepts
+    private static final Duration MIN_MAX_TIME = Duration.ofMillis(1);
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public ReviewReactiveRepositoryImpl(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public Mono<Review> findById(String reviewId) {
+        return find(Query.query(Criteria.where("_id").is(reviewId))).next();
+    }
+
+    @Override
+    public Flux<Review> findAll() {
+        return find(new Query());
+    }
+
+    @Override
+    public Flux<Review> findReviewsByMovieInfoId(String movieInfoId) {
+        return find(Query.query(Criteria.where("movieInfoId").is(movieInfoId)));
+    }
+
+    @Override
+    public Mono<Review> updateReview(String reviewId, Review review) {
+        var query = Query.query(Criteria.where("reviewId").is(reviewId));
+        if (review.getVersion() != null) {
+            query.addCriteria(Criteria.where("version").is(review.getVersion()));
+        }
+        // a field left out of the request keeps its stored value
+        var update = new Update().inc("version", 1);
+        if (review.getComment() != null) {
+            update.set("comment", review.getComment());
+        }
+        if (review.getRating() != null) {
+            update.set("rating", review.getRating());
+        }
+        return Deadline.current().flatMap(deadline -> {
+            maxTime(deadline).ifPresent(query::maxTime);
+            return mongoOperations.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                    Review.class);
+        }).onErrorMap(ReviewReactiveRepositoryImpl::isMaxTimeExpired, ReviewReactiveRepositoryImpl::deadlineExceeded);
+    }
+
+    @Override
+    public Mono<Map<Integer, DataIntegrityViolationException>> insertReviews(List<Review> reviews) {
+        // insertAll is ordered and has no outcome per review, so this goes to the collection directly
+        var documents = reviews.stream()
+                .map(review -> {
+                    if (review.getReviewId() == null) {
+                        review.setReviewId(new ObjectId().toHexString());
+                    }
+                    var document = new Document();
+                    mongoOperations.getConverter().write(review, document);
+                    return document;
+                })
+                .collect(Collectors.toList());
+        return mongoOperations.getCollection(mongoOperations.getCollectionName(Review.class))
+                .flatMap(collection -> Mono.from(collection.insertMany(documents,
+                        new InsertManyOptions().ordered(false))))
+                .map(insertManyResult -> Map.<Integer, DataIntegrityViolationException>of())
+                .onErrorResume(MongoBulkWriteException.class, ex -> Mono.just(ex.getWriteErrors().stream()
+                        .collect(Collectors.toMap(BulkWriteError::getIndex, ReviewReactiveRepositoryImpl::writeError))));
+    }
+
+    private static DataIntegrityViolationException writeError(BulkWriteError writeError) {
+        return ErrorCategory.fromErrorCode(writeError.getCode()) == ErrorCategory.DUPLICATE_KEY
+                ? new DuplicateKeyException(writeError.getMessage())
+                : new DataIntegrityViolationException(writeError.getMessage());
+    }
+
+    @Override
+    public Mono<Boolean> deleteReviewById(String reviewId) {
+        return mongoOperations.remove(Query.query(Criteria.where("reviewId").is(reviewId)), Review.class)
+                .map(deleteResult -> deleteResult.getDeletedCount() > 0);
+    }
+
+    @Override
+    public Mono<Long> deleteReviewsByMovieInfoId(String movieInfoId) {
+        return mongoOperations.remove(Query.query(Criteria.where("movieInfoId").is(movieInfoId)), Review.class)
+                .map(DeleteResult::getDeletedCount);
+    }
+
+    @Override
+    public Flux<Review> findReviewsPage(String movieInfoId, String afterReviewId, int limit) {
+        var query = new Query();
+        if (movieInfoId != null) {
+            query.addCriteria(Criteria.where("movieInfoId").is(movieInfoId));
+        }
+        if (afterReviewId != null) {
+            query.addCriteria(reviewIdAfter(afterReviewId));
+        }
+        return find(query.with(Sort.by("reviewId")).limit(limit));
+    }
+
+    @Override
+    public Flux<ReviewGroup> findReviewGroupsByMovieInfoIds(Collection<String> movieInfoIds, int limitPerMovie) {
+        // one round trip for the whole batch: the $sort is served by the movieInfoId_id index, and a $group that
+        // outgrows the memory limit spills to disk rather than failing; only the sliced arrays are returned
+        return Deadline.current().flatMapMany(deadline -> {
+            var options = AggregationOptions.builder().allowDiskUse(true);
+            maxTime(deadline).ifPresent(options::maxTime);
+            var aggregation = Aggregation.newAggregation(Review.class,
+                    Aggregation.match(Criteria.where("movieInfoId").in(movieInfoIds)),
+                    Aggregation.sort(Sort.by("movieInfoId", "reviewId")),
+                    Aggregation.group("movieInfoId").push(Aggregation.ROOT).as("reviews"),
+                    Aggregation.project()
+                            .and(ArrayOperators.Slice.sliceArrayOf("reviews").itemCount(limitPerMovie)).as("reviews"))
+                    .withOptions(options.build());
+            return mongoOperations.aggregate(aggregation, ReviewGroup.class);
+        }).onErrorMap(ReviewReactiveRepositoryImpl::isMaxTimeExpired, ReviewReactiveRepositoryImpl::deadlineExceeded);
+    }
+
+    @Override
+    public Mono<ReviewSummary> findReviewSummary(String movieInfoId, int topReviews, Sort topReviewsOrder) {
+        var histogram = Deadline.current().flatMapMany(deadline -> {
+            var options = AggregationOptions.builder();
+            maxTime(deadline).ifPresent(options::maxTime);
+            var aggregation = Aggregation.newAggregation(Review.class,
+                    Aggregation.match(Criteria.where("movieInfoId").is(movieInfoId)),
+                    Aggregation.project("rating")
+                            .and(ArithmeticOperators.Floor.floorValueOf("rating")).as("bucket"),
+                    Aggregation.group("bucket").count().as("count").sum("rating").as("ratingSum"))
+                    .withOptions(options.build());
+            return mongoOperations.aggregate(aggregation, Document.class);
+        }).onErrorMap(ReviewReactiveRepositoryImpl::isMaxTimeExpired, ReviewReactiveRepositoryImpl::deadlineExceeded);
+
+        // a limit of 0 would mean no limit at all
+        var top = topReviews == 0 ? Flux.<Review>empty() : find(Query.query(Criteria.where("movieInfoId").is(movieInfoId))
+                .with(topReviewsOrder)
+                .limit(topReviews));
+
+        return Mono.zip(histogram.collectList(), top.collectList(),
+                (buckets, topReviewList) -> toReviewSummary(movieInfoId, buckets, topReviewList));
+    }
+
+    private static ReviewSummary toReviewSummary(String movieInfoId, List<Document> buckets, List<Review> topReviews) {
+        var reviewCount = 0L;
+        var ratedCount = 0L;
+        var ratingSum = 0.0;
+        var ratingHistogram = new TreeMap<Integer, Long>();
+        for (var bucket : buckets) {
+            var count = ((Number) bucket.get("count")).longValue();
+            reviewCount += count;
+            // reviews without a rating are counted, but have no bucket
+            var rating = (Number) bucket.get("_id");
+            if (rating != null) {
+                ratedCount += count;
+                ratingSum += ((Number) bucket.get("ratingSum")).doubleValue();
+                ratingHistogram.put(rating.intValue(), count);
+            }
+        }
+        var averageRating = ratedCount > 0 ? ratingSum / ratedCount : null;
+        return new ReviewSummary(movieInfoId, reviewCount, averageRating, ratingHistogram, topReviews);
+    }
+
+    /**
+     * Ids that look like ObjectIds are stored as such, and $gt only compares values of the same BSON type (the
+     * mapping converts for equality but not for $gt). ObjectIds sort after strings, so they all follow a string id.
+     */
+    private static Criteria reviewIdAfter(String afterReviewId) {
+        if (ObjectId.isValid(afterReviewId)) {
+            return Criteria.where("reviewId").gt(new ObjectId(afterReviewId));
+        }
+        return new Criteria().orOperator(Criteria.where("reviewId").gt(afterReviewId),
+                Criteria.where("reviewId").type(JsonSchemaObject.Type.objectIdType()));
+    }
+
+    private Flux<Review> find(Query query) {
+        return Deadline.current().flatMapMany(deadline -> {
+            maxTime(deadline).ifPresent(query::maxTime);
+            return mongoOperations.find(query, Review.class);
+        }).onErrorMap(ReviewReactiveRepositoryImpl::isMaxTimeExpired, ReviewReactiveRepositoryImpl::deadlineExceeded);
+    }
+
+    private static Optional<Duration> maxTime(Optional<Deadline> deadline) {
+        return deadline.map(Deadline::remaining)
+                .map(remaining -> remaining.compareTo(MIN_MAX_TIME) >= 0 ? remaining : MIN_MAX_TIME);
+    }
+
+    private static boolean isMaxTimeExpired(Throwable ex) {
+        return ex instanceof MongoExecutionTimeoutException
+                || NestedExceptionUtils.getMostSpecificCause(ex) instanceof MongoExecutionTimeoutException;
+    }
+
+    private static DeadlineExceededException deadlineExceeded(Throwable ex) {
+        return new DeadlineExceededException("Request deadline exceeded while querying reviews");
+    }
+}
@@ -0,0 +1,188 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewConflictException;
+import com.reactivespring.exception.ReviewWriteRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Gathers the reviews saved concurrently through {@link #save(Review)} for up to max-batch-size reviews or
+ * max-delay, and writes each batch with one insertMany. Every caller still gets its own review or error.
+ * At most max-pending reviews wait to be written; saves beyond that are rejected at once with
+ * {@link ReviewWriteRejectedException} rather than queued behind a Mongo that is not keeping up.
+ * Disabled by default, saves then go to the repository one by one.
+ */
+@Component
+@Slf4j
+public class ReviewWriteCoalescer {
+
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(10);
+
+    private final ReviewReactiveRepository reviewReactiveRepository;
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+
+    private final int maxPending;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Sinks.Many<PendingWrite> writes = Sinks.many().unicast().onBackpressureBuffer();
+
+    private final Disposable flushes;
+
+    // empty once the flushes have ended, every batch written
+    private final Sinks.Empty<Void> flushed = Sinks.empty();
+
+    private final DistributionSummary batchSize;
+
+    private final Timer flushLatency;
+
+    private final Counter rejectedWrites;
+
+    public ReviewWriteCoalescer(ReviewReactiveRepository reviewReactiveRepository, MeterRegistry meterRegistry,
+                                @Value("${reviews.write-coalescing.enabled:false}") boolean enabled,
+                                @Value("${reviews.write-coalescing.max-batch-size:100}") int maxBatchSize,
+                                @Value("${reviews.write-coalescing.max-delay:5ms}") Duration maxDelay,
+                                @Value("${reviews.write-coalescing.max-pending:5000}") int maxPending,
+                                @Value("${reviews.write-coalescing.max-concurrent-flushes:4}") int maxConcurrentFlushes) {
+        this.reviewReactiveRepository = reviewReactiveRepository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxPending = maxPending;
+
+        this.batchSize = DistributionSummary.builder("reviews.write.coalescer.batch.size")
+                .description("Reviews written by one insertMany")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("reviews.write.coalescer.flush")
+                .description("Time taken by one insertMany")
+                .register(meterRegistry);
+        this.rejectedWrites = Counter.builder("reviews.write.coalescer.rejected")
+                .description("Saves turned away because max-pending reviews were waiting to be written")
+                .register(meterRegistry);
+        Gauge.builder("reviews.write.coalescer.pending", pending, AtomicInteger::get)
+                .description("Reviews waiting to be written")
+                .register(meterRegistry);
+
+        this.flushes = !enabled ? null : writes.asFlux()
+                .bufferTimeout(maxBatchSize, maxDelay)
+                // bufferTimeout emits on its timer regardless of demand, the pending limit is what bounds the
+                // batches held here while every flush is busy
+                .onBackpressureBuffer()
+                .flatMap(this::flush, maxConcurrentFlushes)
+                .doFinally(signalType -> flushed.tryEmitEmpty())
+                .subscribe();
+    }
+
+    /**
+     * Saves a new review like {@link ReviewReactiveRepository#save(Object)}, except that when coalescing is enabled
+     * it is always inserted: a review carrying the id of an existing review fails with a ReviewConflictException
+     * instead of replacing it. A cancelled save may still be written if its batch was already on its way.
+     */
+    public Mono<Review> save(Review review) {
+        return (enabled ? coalescedSave(review) : reviewReactiveRepository.save(review))
+                .onErrorMap(DuplicateKeyException.class, ex -> new ReviewConflictException(
+                        "A review with reviewId " + review.getReviewId() + " already exists"));
+    }
+
+    private Mono<Review> coalescedSave(Review review) {
+        return Mono.create(sink -> {
+            if (pending.incrementAndGet() > maxPending) {
+                pending.decrementAndGet();
+                rejectedWrites.increment();
+                sink.error(new ReviewWriteRejectedException("Too many reviews waiting to be written, retry later"));
+                return;
+            }
+            // concurrent callers only race for the emission, the busy loop lasts as long as one emitNext
+            writes.emitNext(new PendingWrite(review, sink),
+                    (signalType, emitResult) -> emitResult == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+        });
+    }
+
+    /**
+     * Never fails, an error would end the subscription that every later save depends on.
+     */
+    private Mono<Void> flush(List<PendingWrite> batch) {
+        var reviews = batch.stream().map(PendingWrite::getReview).collect(Collectors.toList());
+        batchSize.record(batch.size());
+        var sample = Timer.start(meterRegistry);
+        return Mono.defer(() -> reviewReactiveRepository.insertReviews(reviews))
+                .doOnNext(writeErrors -> {
+                    for (var i = 0; i < batch.size(); i++) {
+                        var writeError = writeErrors.get(i);
+                        if (writeError == null) {
+                            batch.get(i).getSink().success(reviews.get(i));
+                        } else {
+                            batch.get(i).getSink().error(writeError);
+                        }
+                    }
+                })
+                .doOnError(ex -> {
+                    log.error("Writing a batch of {} reviews failed : {}", batch.size(), ex.getMessage());
+                    batch.forEach(write -> write.getSink().error(ex));
+                })
+                .doFinally(signalType -> {
+                    sample.stop(flushLatency);
+                    pending.addAndGet(-batch.size());
+                })
+                .then()
+                .onErrorResume(ex -> Mono.empty());
+    }
+
+    /**
+     * Writes the reviews still waiting before the repository goes away: no more saves are taken and this returns
+     * once the last batch has been written, or after STOP_TIMEOUT, when the batches still in flight are given up.
+     */
+    @PreDestroy
+    void stop() {
+        if (flushes == null) {
+            return;
+        }
+        writes.emitComplete((signalType, emitResult) -> emitResult == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+        flushed.asMono()
+                .timeout(STOP_TIMEOUT, Mono.fromRunnable(() -> {
+                    log.warn("{} reviews not written within {} of stopping", pending.get(), STOP_TIMEOUT);
+                    flushes.dispose();
+                }))
+                .block();
+    }
+
+    private static class PendingWrite {
+
+        private final Review review;
+
+        private final MonoSink<Review> sink;
+
+        private PendingWrite(Review review, MonoSink<Review> sink) {
+            this.review = review;
+            this.sink = sink;
+        }
+
+        Review getReview() {
+            return review;
+        }
+
+        MonoSink<Review> getSink() {
+            return sink;
+        }
+    }
+}
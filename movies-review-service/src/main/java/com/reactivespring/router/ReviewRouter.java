@@ -20,8 +20,12 @@ public class ReviewRouter {
 
         return route()
                 .nest(path(V_1_REVIEWS), builder -> builder.POST("", reviewHandler::addReview)
+                        .POST("/grouped", reviewHandler::getReviewsGroupedByMovieInfoId)
+                        .POST("/batch", reviewHandler::addReviews)
                         .PUT("/{id}", reviewHandler::updateReview)
                         .DELETE("/{id}", reviewHandler::deleteReview)
+                        .DELETE("", reviewHandler::deleteReviews)
+                        .GET("/summary", reviewHandler::getReviewSummary)
                         .GET("/{id}", reviewHandler::getReviews)
                         .GET("", reviewHandler::getAllReview))
                 .GET("/v1/helloworld", (request -> ServerResponse.ok().bodyValue("Hello World")))
@@ -0,0 +1,93 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs every query of ReviewReactiveRepository and fails when Mongo would answer one of them with a collection
+ * scan, e.g. because a query changed and no longer matches an index declared on Review.
+ */
+@DataMongoTest
+@ActiveProfiles("test")
+@Import(MongoIndexInitializer.class)
+class ReviewQueryPlanIntgTest {
+
+    @TestConfiguration
+    static class QueryPlanConfig {
+
+        @Bean
+        QueryPlanRecorder queryPlanRecorder() {
+            return new QueryPlanRecorder();
+        }
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer queryPlanRecorderCustomizer(QueryPlanRecorder queryPlanRecorder) {
+            return settings -> settings.addCommandListener(queryPlanRecorder);
+        }
+    }
+
+    @Autowired
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    @Autowired
+    ReactiveMongoOperations mongoOperations;
+
+    @Autowired
+    QueryPlanRecorder queryPlanRecorder;
+
+    @BeforeEach
+    void setUp() {
+        var reviewsList = List.of(
+                new Review(null, "1", "Awesome Movie", 9.0),
+                new Review(null, "1", "Awesome Movie1", 9.0),
+                new Review(null, "2", "Excellent Movie", 8.0));
+        reviewReactiveRepository.saveAll(reviewsList).blockLast();
+        queryPlanRecorder.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reviewReactiveRepository.deleteAll().block();
+    }
+
+    @Test
+    void queriesUseIndexes() {
+        var objectId = new ObjectId().toHexString();
+
+        reviewReactiveRepository.findById(objectId).block();
+        reviewReactiveRepository.findReviewsByMovieInfoId("1").blockLast();
+        reviewReactiveRepository.updateReview(objectId, new Review(null, "1", "Good Movie", 7.5)).block();
+        reviewReactiveRepository.updateReview(objectId, new Review(null, "1", "Good Movie", 7.5, 1L)).block();
+        reviewReactiveRepository.deleteReviewById(objectId).block();
+        reviewReactiveRepository.deleteReviewsByMovieInfoId("3").block();
+        reviewReactiveRepository.findReviewsPage(null, null, 2).blockLast();
+        reviewReactiveRepository.findReviewsPage("1", null, 2).blockLast();
+        reviewReactiveRepository.findReviewsPage(null, objectId, 2).blockLast();
+        reviewReactiveRepository.findReviewsPage("1", objectId, 2).blockLast();
+        reviewReactiveRepository.findReviewsPage(null, "review-a", 2).blockLast();
+        reviewReactiveRepository.findReviewsPage("1", "review-a", 2).blockLast();
+        reviewReactiveRepository.findReviewGroupsByMovieInfoIds(List.of("1", "2"), 2).blockLast();
+        reviewReactiveRepository.findReviewSummary("1", 2, Sort.by(Sort.Direction.DESC, "rating", "reviewId")).block();
+        reviewReactiveRepository.findReviewSummary("1", 2, Sort.by(Sort.Direction.DESC, "reviewId")).block();
+
+        assertFalse(queryPlanRecorder.getReads().isEmpty());
+        assertEquals(List.of(), queryPlanRecorder.collectionScans(mongoOperations));
+    }
+}
@@ -2,19 +2,41 @@ package com.reactivespring.routes;
 
 
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewBatchResult;
+import com.reactivespring.domain.ReviewGroup;
+import com.reactivespring.domain.ReviewGroupRequest;
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.handler.ReviewHandler;
+import com.reactivespring.repository.MongoIndexInitializer;
+import com.reactivespring.repository.MovieInfoIdMigration;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -28,15 +50,24 @@ public class ReviewsIntgTest {
     @Autowired
     ReviewReactiveRepository reviewReactiveRepository;
 
+    @Autowired
+    ReactiveMongoOperations mongoOperations;
+
+    @Autowired
+    MovieInfoIdMigration movieInfoIdMigration;
+
+    @Autowired
+    MongoIndexInitializer mongoIndexInitializer;
+
     String BASE_URL = "/v1/reviews";
 
     @BeforeEach
     void setup() {
 
         var reviewsList = List.of(
-                new Review(null, 1L, "Awesome Movie", 9.0),
-                new Review(null, 1L, "Awesome Movie1", 9.0),
-                new Review(null, 2L, "Excellent Movie", 8.0));
+                new Review(null, "1", "Awesome Movie", 9.0),
+                new Review(null, "1", "Awesome Movie1", 9.0),
+                new Review(null, "2", "Excellent Movie", 8.0));
         reviewReactiveRepository.saveAll(reviewsList)
                 .blockLast();
     }
@@ -44,7 +75,7 @@ public class ReviewsIntgTest {
 
     @Test
     public void addReview() {
-        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+        var review = new Review(null, "1", "Awesome Movie", 9.0);
 
         webTestClient.post()
                 .uri(BASE_URL)
@@ -63,7 +94,7 @@ public class ReviewsIntgTest {
 
     @Test
     public void updateReview() {
-        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+        var review = new Review(null, "1", "Awesome Movie", 9.0);
 
         webTestClient.post()
                 .uri(BASE_URL)
@@ -100,11 +131,55 @@ public class ReviewsIntgTest {
                 });
     }
 
+    @Test
+    public void updateReview_RatingLeftOut() {
+        var review = reviewReactiveRepository.save(new Review(null, "1", "Awesome Movie", 9.0, 0L)).block();
+
+        webTestClient.put()
+                .uri(BASE_URL + "/{id}", review.getReviewId())
+                .bodyValue(new Review(null, "1", "Good Movie", null))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Review.class)
+                .consumeWith(movieReviewEntityExchangeResult -> {
+                    var movieReview = movieReviewEntityExchangeResult.getResponseBody();
+                    assertEquals("Good Movie", movieReview.getComment());
+                    assertEquals(9.0, movieReview.getRating());
+                });
+    }
+
+    @Test
+    public void updateReview_Versioned() {
+        var review = reviewReactiveRepository.save(new Review(null, "1", "Awesome Movie", 9.0, 0L)).block();
+        var uri = UriComponentsBuilder.fromUriString(BASE_URL + "/").path(review.getReviewId())
+                .buildAndExpand().toUri();
+
+        review.setComment("Good Movie");
+        webTestClient.put()
+                .uri(uri)
+                .bodyValue(review).exchange()
+                .expectStatus().isOk()
+                .expectBody(Review.class)
+                .consumeWith(movieReviewEntityExchangeResult ->
+                        assertEquals(1L, movieReviewEntityExchangeResult.getResponseBody().getVersion()));
+
+        // still at version 0, as if read before the update above
+        review.setComment("Bad Movie");
+        webTestClient.put()
+                .uri(uri)
+                .bodyValue(review).exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+
+        assertEquals("Good Movie", reviewReactiveRepository.findById(review.getReviewId()).block().getComment());
+    }
+
 
     @Test
     public void getReviews() {
         webTestClient.get().uri(BASE_URL)
-                .exchange().expectStatus().isOk().expectBodyList(Review.class)
+                .exchange().expectStatus().isOk()
+                .expectHeader().doesNotExist(ReviewHandler.NEXT_CURSOR_HEADER)
+                .expectBodyList(Review.class)
                 .hasSize(3);
     }
 
@@ -113,7 +188,7 @@ public class ReviewsIntgTest {
     public void getReviewsbyMovieInfoId() {
 
 
-        var uri = UriComponentsBuilder.fromUriString(BASE_URL).queryParam("movieInfoId", 1L)
+        var uri = UriComponentsBuilder.fromUriString(BASE_URL).queryParam("movieInfoId", "1")
                 .buildAndExpand().toUri();
 
         webTestClient.get().uri(uri)
@@ -121,9 +196,164 @@ public class ReviewsIntgTest {
                 .hasSize(2);
     }
 
+    @Test
+    public void getReviewsbyMovieInfoId_StoredAsNumber() {
+        // reviews written while movieInfoId was a Long
+        mongoOperations.insert(new Document("movieInfoId", 3L).append("comment", "Legacy Movie").append("rating", 7.0),
+                "review").block();
+        mongoOperations.insert(new Document("movieInfoId", 3).append("comment", "Legacy Movie1").append("rating", 6.0),
+                "review").block();
+
+        movieInfoIdMigration.migrateNumericMovieInfoIds();
+
+        var uri = UriComponentsBuilder.fromUriString(BASE_URL).queryParam("movieInfoId", "3")
+                .buildAndExpand().toUri();
+        webTestClient.get().uri(uri)
+                .exchange().expectStatus().isOk().expectBodyList(Review.class)
+                .hasSize(2)
+                .value(reviews -> reviews.forEach(review -> assertEquals("3", review.getMovieInfoId())));
+    }
+
+    @Test
+    public void ensureIndexes_DropsSupersededMovieInfoIdIndex() {
+        // left behind by the @Indexed movieInfoId of older versions
+        mongoOperations.indexOps(Review.class).ensureIndex(new Index("movieInfoId", Sort.Direction.ASC)).block();
+
+        mongoIndexInitializer.ensureIndexes();
+
+        var indexNames = mongoOperations.indexOps(Review.class).getIndexInfo()
+                .map(IndexInfo::getName)
+                .collectList()
+                .block();
+        assertFalse(indexNames.contains("movieInfoId"), indexNames.toString());
+        assertTrue(indexNames.containsAll(List.of("movieInfoId_rating", "movieInfoId_id")), indexNames.toString());
+    }
+
+    @Test
+    public void getReviewsGroupedByMovieInfoId() {
+
+        webTestClient.post()
+                .uri(BASE_URL + "/grouped")
+                .bodyValue(new ReviewGroupRequest(List.of("1", "2", "3"), 1))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ReviewGroup.class)
+                .consumeWith(reviewGroupsEntityExchangeResult -> {
+                    var reviewGroups = reviewGroupsEntityExchangeResult.getResponseBody();
+                    assert reviewGroups != null;
+                    assertEquals(2, reviewGroups.size());
+                    reviewGroups.forEach(reviewGroup -> {
+                        assertEquals(1, reviewGroup.getReviews().size());
+                        assertEquals(reviewGroup.getMovieInfoId(), reviewGroup.getReviews().get(0).getMovieInfoId());
+                    });
+                });
+    }
+
+    @Test
+    public void getReviewsGroupedByMovieInfoId_DefaultLimitPerMovie() {
+        reviewReactiveRepository.saveAll(Flux.range(0, 25).map(i -> new Review(null, "4", "Movie " + i, 5.0)))
+                .blockLast();
+
+        webTestClient.post()
+                .uri(BASE_URL + "/grouped")
+                .bodyValue(new ReviewGroupRequest(List.of("4", "2", "1"), null))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ReviewGroup.class)
+                .consumeWith(reviewGroupsEntityExchangeResult -> {
+                    var reviewGroups = reviewGroupsEntityExchangeResult.getResponseBody();
+                    assert reviewGroups != null;
+                    var reviewCounts = reviewGroups.stream().collect(Collectors.toMap(ReviewGroup::getMovieInfoId,
+                            reviewGroup -> reviewGroup.getReviews().size()));
+                    // reviews.grouped.default-per-movie
+                    assertEquals(Map.of("4", 20, "2", 1, "1", 2), reviewCounts);
+                });
+    }
+
+    @Test
+    public void getReviewsPage() {
+
+        var reviewIds = readAllPages();
+
+        assertEquals(3, reviewIds.size());
+        assertEquals(3, new HashSet<>(reviewIds).size());
+    }
+
+    @Test
+    public void getReviewsPage_MixedIdTypes() {
+        // ids that are not ObjectIds stay strings, and sort before all ObjectIds
+        reviewReactiveRepository.saveAll(List.of(
+                new Review("review-a", "1", "Awesome Movie2", 9.0),
+                new Review("review-b", "2", "Excellent Movie1", 8.0)))
+                .blockLast();
+
+        var reviewIds = readAllPages();
+
+        assertEquals(5, reviewIds.size());
+        assertEquals(5, new HashSet<>(reviewIds).size());
+        assertEquals(List.of("review-a", "review-b"), reviewIds.subList(0, 2));
+    }
+
+    private List<String> readAllPages() {
+        var reviewIds = new ArrayList<String>();
+        String cursor = null;
+        do {
+            var after = cursor;
+            var result = webTestClient.get()
+                    .uri(uriBuilder -> {
+                        uriBuilder.path(BASE_URL).queryParam("limit", "2");
+                        if (after != null) {
+                            uriBuilder.queryParam("after", after);
+                        }
+                        return uriBuilder.build();
+                    })
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBodyList(Review.class)
+                    .returnResult();
+            result.getResponseBody().forEach(review -> reviewIds.add(review.getReviewId()));
+            cursor = result.getResponseHeaders().getFirst(ReviewHandler.NEXT_CURSOR_HEADER);
+        } while (cursor != null);
+        return reviewIds;
+    }
+
+    @Test
+    public void getReviewSummary() {
+
+        reviewReactiveRepository.save(new Review(null, "1", "Good Movie", 7.5)).block();
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(BASE_URL + "/summary")
+                        .queryParam("movieInfoId", "1")
+                        .queryParam("top", "2")
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ReviewSummary.class)
+                .consumeWith(reviewSummaryEntityExchangeResult -> {
+                    var reviewSummary = reviewSummaryEntityExchangeResult.getResponseBody();
+                    assert reviewSummary != null;
+                    assertEquals(3, reviewSummary.getReviewCount());
+                    assertEquals(8.5, reviewSummary.getAverageRating());
+                    assertEquals(Map.of(7, 1L, 9, 2L), reviewSummary.getRatingHistogram());
+                    assertEquals(2, reviewSummary.getTopReviews().size());
+                    reviewSummary.getTopReviews().forEach(review -> assertEquals(9.0, review.getRating()));
+                });
+    }
+
+    @Test
+    public void getReviews_UnsupportedFilter() {
+
+        var uri = UriComponentsBuilder.fromUriString(BASE_URL).queryParam("id", "1")
+                .buildAndExpand().toUri();
+
+        webTestClient.get().uri(uri)
+                .exchange().expectStatus().isBadRequest();
+    }
+
     @Test
     public void getReviewById() {
-        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+        var review = new Review(null, "1", "Awesome Movie", 9.0);
 
         webTestClient.post()
                 .uri(BASE_URL)
@@ -155,7 +385,7 @@ public class ReviewsIntgTest {
 
     @Test
     public void deleteById() {
-        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+        var review = new Review(null, "1", "Awesome Movie", 9.0);
 
         webTestClient.post()
                 .uri(BASE_URL)
@@ -171,10 +401,65 @@ public class ReviewsIntgTest {
 
                 });
 
+        webTestClient.delete().uri(BASE_URL + "/{id}", review.getReviewId())
+                .exchange().expectStatus().isNoContent();
+
         webTestClient.delete().uri(BASE_URL + "/{id}", review.getReviewId())
                 .exchange().expectStatus().isNotFound();
     }
 
+    @Test
+    public void deleteByMovieInfoId() {
+        webTestClient.delete().uri(BASE_URL + "?movieInfoId={movieInfoId}", "1")
+                .exchange().expectStatus().isNoContent();
+
+        assertEquals(0, reviewReactiveRepository.findReviewsByMovieInfoId("1").count().block());
+        assertEquals(1, reviewReactiveRepository.findReviewsByMovieInfoId("2").count().block());
+
+        // nothing left to delete is not an error, the movie's reviews are gone either way
+        webTestClient.delete().uri(BASE_URL + "?movieInfoId={movieInfoId}", "1")
+                .exchange().expectStatus().isNoContent();
+    }
+
+    @Test
+    public void addReviews() {
+        var existing = reviewReactiveRepository.save(new Review(null, "3", "Awesome Movie", 9.0)).block();
+        var reviews = List.of(
+                new Review(null, "3", "Excellent Movie", 8.0),
+                new Review(existing.getReviewId(), "3", "Awesome Movie", 9.0),
+                new Review(null, null, "Excellent Movie", 8.0));
+
+        var results = webTestClient.post()
+                .uri(BASE_URL + "/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Flux.fromIterable(reviews), Review.class)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(ReviewBatchResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertEquals(3, results.size());
+        assertEquals(ReviewBatchResult.Status.CREATED, results.get(0).getStatus());
+        assertEquals(0L, reviewReactiveRepository.findById(results.get(0).getReviewId()).block().getVersion());
+        // a failed insert does not stop the reviews after it in the same insertMany
+        assertEquals(ReviewBatchResult.Status.FAILED, results.get(1).getStatus());
+        assertEquals(ReviewBatchResult.invalid(2, "review.movieInfoId must not be null"), results.get(2));
+        assertEquals(2, reviewReactiveRepository.findReviewsByMovieInfoId("3").count().block());
+    }
+
+    @Test
+    public void addReviews_DuplicateReviewId() {
+        var existing = reviewReactiveRepository.findReviewsByMovieInfoId("2").blockFirst();
+
+        var writeErrors = reviewReactiveRepository.insertReviews(List.of(
+                new Review(existing.getReviewId(), "2", "Excellent Movie", 8.0))).block();
+
+        // a write through the coalescer answers 409 for it
+        assertTrue(writeErrors.get(0) instanceof DuplicateKeyException);
+    }
+
     @BeforeEach
     void tearDown() {
         reviewReactiveRepository.deleteAll().block();
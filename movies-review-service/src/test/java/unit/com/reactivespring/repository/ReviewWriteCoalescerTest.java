@@ -0,0 +1,166 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewConflictException;
+import com.reactivespring.exception.ReviewWriteRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReviewWriteCoalescerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ReviewReactiveRepository reviewReactiveRepository = Mockito.mock(ReviewReactiveRepository.class);
+
+    @Test
+    void concurrentSavesAreWrittenTogether() {
+        Mockito.when(reviewReactiveRepository.insertReviews(ArgumentMatchers.anyList()))
+                .thenReturn(Mono.just(Map.of()));
+        var coalescer = coalescer(10, Duration.ofMillis(50), 100);
+
+        StepVerifier.create(Flux.range(0, 10)
+                        .flatMap(i -> coalescer.save(new Review("r" + i, "1", "Awesome Movie", 9.0)))
+                        .map(Review::getReviewId)
+                        .collectList())
+                .expectNextMatches(reviewIds -> reviewIds.size() == 10)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        Mockito.verify(reviewReactiveRepository).insertReviews(ArgumentMatchers.argThat(reviews -> reviews.size() == 10));
+        assertEquals(10.0, meterRegistry.get("reviews.write.coalescer.batch.size").summary().totalAmount());
+        assertEquals(1, meterRegistry.get("reviews.write.coalescer.flush").timer().count());
+    }
+
+    @Test
+    void partialBatchIsWrittenAfterMaxDelay() {
+        Mockito.when(reviewReactiveRepository.insertReviews(ArgumentMatchers.anyList()))
+                .thenReturn(Mono.just(Map.of()));
+        var coalescer = coalescer(100, Duration.ofMillis(20), 100);
+
+        StepVerifier.create(coalescer.save(new Review("r1", "1", "Awesome Movie", 9.0)))
+                .expectNextMatches(review -> review.getReviewId().equals("r1"))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void stopWritesPendingReviews() {
+        Mockito.when(reviewReactiveRepository.insertReviews(ArgumentMatchers.anyList()))
+                .thenReturn(Mono.just(Map.<Integer, DataIntegrityViolationException>of())
+                        .delayElement(Duration.ofMillis(200)));
+        var coalescer = coalescer(100, Duration.ofSeconds(10), 100);
+
+        var saved = coalescer.save(new Review("r1", "1", "Awesome Movie", 9.0)).toFuture();
+        coalescer.stop();
+
+        // the batch was neither full nor due, stopping flushed it and waited for it to be written
+        assertTrue(saved.isDone());
+        assertEquals("r1", saved.join().getReviewId());
+    }
+
+    @Test
+    void writeErrorFailsOnlyItsSave() {
+        Mockito.when(reviewReactiveRepository.insertReviews(ArgumentMatchers.anyList()))
+                .thenReturn(Mono.just(Map.of(1, new DataIntegrityViolationException("Document failed validation"))));
+        var coalescer = coalescer(2, Duration.ofSeconds(1), 100);
+
+        var first = coalescer.save(new Review("r1", "1", "Awesome Movie", 9.0)).cache();
+        var second = coalescer.save(new Review("r2", "1", "Awesome Movie", 9.0)).cache();
+        first.subscribe(review -> { }, ex -> { });
+        second.subscribe(review -> { }, ex -> { });
+
+        StepVerifier.create(first)
+                .expectNextMatches(review -> review.getReviewId().equals("r1"))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        StepVerifier.create(second)
+                .expectErrorMatches(ex -> ex instanceof DataIntegrityViolationException
+                        && ex.getMessage().equals("Document failed validation"))
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void duplicateReviewIdIsAConflict() {
+        Mockito.when(reviewReactiveRepository.insertReviews(ArgumentMatchers.anyList()))
+                .thenReturn(Mono.just(Map.of(0, new DuplicateKeyException("E11000 duplicate key error"))));
+        var coalescer = coalescer(1, Duration.ofSeconds(1), 100);
+
+        StepVerifier.create(coalescer.save(new Review("r1", "1", "Awesome Movie", 9.0)))
+                .expectErrorMatches(ex -> ex instanceof ReviewConflictException
+                        && ex.getMessage().equals("A review with reviewId r1 already exists"))
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void failedFlushFailsEverySaveButNotLaterOnes() {
+        Mockito.when(reviewReactiveRepository.insertReviews(ArgumentMatchers.anyList()))
+                .thenReturn(Mono.error(new IllegalStateException("Mongo is down")))
+                .thenReturn(Mono.just(Map.of()));
+        var coalescer = coalescer(100, Duration.ofMillis(20), 100);
+
+        StepVerifier.create(coalescer.save(new Review("r1", "1", "Awesome Movie", 9.0)))
+                .expectErrorMessage("Mongo is down")
+                .verify(Duration.ofSeconds(5));
+        StepVerifier.create(coalescer.save(new Review("r2", "1", "Awesome Movie", 9.0)))
+                .expectNextCount(1)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void savesBeyondMaxPendingAreRejected() {
+        // the first batch never completes, so its reviews stay pending
+        var insert = Sinks.<Map<Integer, DataIntegrityViolationException>>one();
+        Mockito.when(reviewReactiveRepository.insertReviews(ArgumentMatchers.anyList()))
+                .thenReturn(insert.asMono());
+        var coalescer = coalescer(2, Duration.ofMillis(20), 2);
+
+        coalescer.save(new Review("r1", "1", "Awesome Movie", 9.0)).subscribe();
+        coalescer.save(new Review("r2", "1", "Awesome Movie", 9.0)).subscribe();
+
+        StepVerifier.create(coalescer.save(new Review("r3", "1", "Awesome Movie", 9.0)))
+                .expectError(ReviewWriteRejectedException.class)
+                .verify(Duration.ofSeconds(5));
+        assertEquals(1.0, meterRegistry.get("reviews.write.coalescer.rejected").counter().count());
+
+        insert.tryEmitValue(Map.of());
+        StepVerifier.create(coalescer.save(new Review("r3", "1", "Awesome Movie", 9.0)))
+                .expectNextCount(1)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void disabledSavesGoToTheRepository() {
+        var review = new Review("r1", "1", "Awesome Movie", 9.0);
+        Mockito.when(reviewReactiveRepository.save(review)).thenReturn(Mono.just(review));
+        var coalescer = new ReviewWriteCoalescer(reviewReactiveRepository, meterRegistry, false, 10,
+                Duration.ofMillis(5), 100, 1);
+
+        StepVerifier.create(coalescer.save(review))
+                .expectNext(review)
+                .verifyComplete();
+
+        Mockito.verify(reviewReactiveRepository, Mockito.never()).insertReviews(ArgumentMatchers.<List<Review>>any());
+    }
+
+    private ReviewWriteCoalescer coalescer(int maxBatchSize, Duration maxDelay, int maxPending) {
+        return new ReviewWriteCoalescer(reviewReactiveRepository, meterRegistry, true, maxBatchSize, maxDelay,
+                maxPending, 1);
+    }
+}
@@ -1,10 +1,16 @@
 package com.reactivespring.routes;
 
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewBatchResult;
+import com.reactivespring.domain.ReviewGroup;
+import com.reactivespring.domain.ReviewGroupRequest;
+import com.reactivespring.domain.ReviewSummary;
 import com.reactivespring.exceptionhandler.GlobalErrorHandler;
 import com.reactivespring.handler.ReviewHandler;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewWriteCoalescer;
 import com.reactivespring.router.ReviewRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
@@ -12,17 +18,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 @WebFluxTest
-@ContextConfiguration(classes = {ReviewRouter.class, ReviewHandler.class, GlobalErrorHandler.class})
+@ContextConfiguration(classes = {ReviewRouter.class, ReviewHandler.class, ReviewWriteCoalescer.class,
+        SimpleMeterRegistry.class, GlobalErrorHandler.class})
 @AutoConfigureWebTestClient
 public class ReviewsUnitTest {
 
@@ -31,13 +49,15 @@ public class ReviewsUnitTest {
     private ReviewReactiveRepository reviewReactiveRepository;
     @Autowired
     private WebTestClient webTestClient;
+    @Autowired
+    private ReviewHandler reviewHandler;
 
     @Test
     void addReview() {
-        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+        var review = new Review(null, "1", "Awesome Movie", 9.0);
 
         Mockito.when(reviewReactiveRepository.save(ArgumentMatchers.isA(Review.class))).thenReturn(Mono.just(
-                new Review(UUID.randomUUID().toString(), 1L, "Awesome Movie", 9.0)
+                new Review(UUID.randomUUID().toString(), "1", "Awesome Movie", 9.0)
         ));
 
         webTestClient.post()
@@ -54,9 +74,23 @@ public class ReviewsUnitTest {
                 });
     }
 
+    @Test
+    void addReview_DuplicateReviewId() {
+        var review = new Review("r1", "1", "Awesome Movie", 9.0);
+
+        Mockito.when(reviewReactiveRepository.save(ArgumentMatchers.isA(Review.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key error")));
+
+        webTestClient.post()
+                .uri(BASE_URL)
+                .bodyValue(review).exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody(String.class).isEqualTo("A review with reviewId r1 already exists");
+    }
+
     @Test
     void addReview_Validation() {
-        var review = new Review(null, 1L, "Awesome Movie", -9.0);
+        var review = new Review(null, "1", "Awesome Movie", -9.0);
 
 
         webTestClient.post()
@@ -82,11 +116,11 @@ public class ReviewsUnitTest {
 
     @Test
     public void updateReview() {
-        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+        var review = new Review(null, "1", "Awesome Movie", 9.0);
 
 
         Mockito.when(reviewReactiveRepository.save(ArgumentMatchers.isA(Review.class))).thenReturn(Mono.just(
-                new Review(UUID.randomUUID().toString(), 1L, "Awesome Movie", 9.0)
+                new Review(UUID.randomUUID().toString(), "1", "Awesome Movie", 9.0)
         ));
 
         webTestClient.post()
@@ -106,12 +140,9 @@ public class ReviewsUnitTest {
         review.setRating(7.5);
         review.setComment("Good Movie");
 
-        Mockito.when(reviewReactiveRepository.findById(ArgumentMatchers.isA(String.class))).thenReturn(Mono.just(
-                new Review(UUID.randomUUID().toString(), 1L, "Good Movie", 7.5)
-        ));
-
-        Mockito.when(reviewReactiveRepository.save(ArgumentMatchers.isA(Review.class))).thenReturn(Mono.just(
-                new Review(UUID.randomUUID().toString(), 1L, "Good Movie", 7.5)
+        Mockito.when(reviewReactiveRepository.updateReview(ArgumentMatchers.isA(String.class),
+                ArgumentMatchers.isA(Review.class))).thenReturn(Mono.just(
+                new Review(UUID.randomUUID().toString(), "1", "Good Movie", 7.5, 1L)
         ));
         var uri = UriComponentsBuilder.fromUriString(BASE_URL + "/").path(review.getReviewId())
                 .buildAndExpand().toUri();
@@ -137,10 +168,11 @@ public class ReviewsUnitTest {
 
 
         String reviewId = UUID.randomUUID().toString();
-        var review = new Review(reviewId, 1L, "Awesome Movie", 9.0);
+        var review = new Review(reviewId, "1", "Awesome Movie", 9.0);
 
 
-        Mockito.when(reviewReactiveRepository.findById(ArgumentMatchers.isA(String.class))).thenReturn(Mono.empty());
+        Mockito.when(reviewReactiveRepository.updateReview(ArgumentMatchers.isA(String.class),
+                ArgumentMatchers.isA(Review.class))).thenReturn(Mono.empty());
 
         var uri = UriComponentsBuilder.fromUriString(BASE_URL).pathSegment(reviewId)
                 .buildAndExpand().toUri();
@@ -151,4 +183,377 @@ public class ReviewsUnitTest {
                 .expectStatus().isNotFound()
                 .expectBody(String.class).isEqualTo("Review not found for reviewId - " + reviewId);
     }
+
+    @Test
+    public void updateReview_Validation() {
+
+        var reviewId = UUID.randomUUID().toString();
+        var review = new Review(reviewId, "1", "Awesome Movie", -9.0);
+
+        webTestClient.put()
+                .uri(BASE_URL + "/{id}", reviewId)
+                .bodyValue(review).exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("rating.negative : please pass a non-negative value");
+
+        Mockito.verifyNoInteractions(reviewReactiveRepository);
+    }
+
+    @Test
+    public void updateReview_VersionConflict() {
+
+        String reviewId = UUID.randomUUID().toString();
+        var review = new Review(reviewId, "1", "Awesome Movie", 9.0, 3L);
+
+        Mockito.when(reviewReactiveRepository.updateReview(reviewId, review)).thenReturn(Mono.empty());
+        Mockito.when(reviewReactiveRepository.existsById(reviewId)).thenReturn(Mono.just(true));
+
+        var uri = UriComponentsBuilder.fromUriString(BASE_URL).pathSegment(reviewId)
+                .buildAndExpand().toUri();
+
+        webTestClient.put()
+                .uri(uri)
+                .bodyValue(review).exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody(String.class).isEqualTo("Review " + reviewId + " has been updated since version 3");
+    }
+
+    @Test
+    public void deleteReview() {
+
+        var reviewId = UUID.randomUUID().toString();
+        Mockito.when(reviewReactiveRepository.deleteReviewById(reviewId)).thenReturn(Mono.just(true));
+
+        webTestClient.delete()
+                .uri(BASE_URL + "/{id}", reviewId)
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+
+    @Test
+    public void deleteReview_ReviewNotFound() {
+
+        var reviewId = UUID.randomUUID().toString();
+        Mockito.when(reviewReactiveRepository.deleteReviewById(reviewId)).thenReturn(Mono.just(false));
+
+        webTestClient.delete()
+                .uri(BASE_URL + "/{id}", reviewId)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class).isEqualTo("Review not found for reviewId - " + reviewId);
+    }
+
+    @Test
+    public void deleteReviews_MovieInfoIdMissing() {
+
+        webTestClient.delete()
+                .uri(BASE_URL)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("movieInfoId must be present");
+
+        Mockito.verifyNoInteractions(reviewReactiveRepository);
+    }
+
+    @Test
+    public void getReviewsByMovieInfoId() {
+
+        Mockito.when(reviewReactiveRepository.findReviewsPage("1", null, 21)).thenReturn(Flux.just(
+                new Review(UUID.randomUUID().toString(), "1", "Awesome Movie", 9.0),
+                new Review(UUID.randomUUID().toString(), "1", "Good Movie", 7.5)
+        ));
+
+        var uri = UriComponentsBuilder.fromUriString(BASE_URL).queryParam("movieInfoId", "1")
+                .buildAndExpand().toUri();
+
+        webTestClient.get()
+                .uri(uri)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Review.class)
+                .hasSize(2);
+
+        Mockito.verify(reviewReactiveRepository, Mockito.never()).findAll();
+    }
+
+    @Test
+    public void getReviewsByMovieInfoId_Ndjson() {
+
+        Mockito.when(reviewReactiveRepository.findReviewsPage("1", null, 21)).thenReturn(Flux.just(
+                new Review(UUID.randomUUID().toString(), "1", "Awesome Movie", 9.0),
+                new Review(UUID.randomUUID().toString(), "1", "Good Movie", 7.5)
+        ));
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(BASE_URL).queryParam("movieInfoId", "1").build())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(Review.class)
+                .hasSize(2);
+    }
+
+    @Test
+    public void getReviewsByMovieInfoId_PagedByDefault() {
+
+        var reviews = new ArrayList<Review>();
+        for (int i = 0; i < 21; i++) {
+            reviews.add(new Review(String.valueOf(i), "1", "Awesome Movie", 9.0));
+        }
+        Mockito.when(reviewReactiveRepository.findReviewsPage("1", null, 21)).thenReturn(Flux.fromIterable(reviews));
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(BASE_URL).queryParam("movieInfoId", "1").build())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(ReviewHandler.NEXT_CURSOR_HEADER)
+                .expectBodyList(Review.class)
+                .hasSize(20);
+
+        Mockito.verify(reviewReactiveRepository, Mockito.never()).findReviewsByMovieInfoId("1");
+    }
+
+    @Test
+    public void getReviewsPage() {
+
+        Mockito.when(reviewReactiveRepository.findReviewsPage("1", null, 3)).thenReturn(Flux.just(
+                new Review("a", "1", "Awesome Movie", 9.0),
+                new Review("b", "1", "Good Movie", 7.5),
+                new Review("c", "1", "Excellent Movie", 8.0)));
+
+        var nextCursor = webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(BASE_URL).queryParam("movieInfoId", "1").queryParam("limit", "2").build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Review.class)
+                .hasSize(2)
+                .returnResult()
+                .getResponseHeaders().getFirst(ReviewHandler.NEXT_CURSOR_HEADER);
+        assertNotNull(nextCursor);
+
+        Mockito.when(reviewReactiveRepository.findReviewsPage("1", "b", 3)).thenReturn(Flux.just(
+                new Review("c", "1", "Excellent Movie", 8.0)));
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(BASE_URL).queryParam("movieInfoId", "1").queryParam("limit", "2")
+                        .queryParam("after", nextCursor).build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(ReviewHandler.NEXT_CURSOR_HEADER)
+                .expectBodyList(Review.class)
+                .hasSize(1);
+
+        Mockito.verify(reviewReactiveRepository, Mockito.never()).findReviewsByMovieInfoId("1");
+    }
+
+    @Test
+    public void getReviews_PagedByDefault() {
+
+        var reviews = new ArrayList<Review>();
+        for (int i = 0; i < 21; i++) {
+            reviews.add(new Review(String.valueOf(i), "1", "Awesome Movie", 9.0));
+        }
+        Mockito.when(reviewReactiveRepository.findReviewsPage(null, null, 21)).thenReturn(Flux.fromIterable(reviews));
+
+        webTestClient.get()
+                .uri(BASE_URL)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(ReviewHandler.NEXT_CURSOR_HEADER)
+                .expectBodyList(Review.class)
+                .hasSize(20);
+
+        Mockito.verify(reviewReactiveRepository, Mockito.never()).findAll();
+    }
+
+    @Test
+    public void getReviewsPage_LimitCapped() {
+
+        Mockito.when(reviewReactiveRepository.findReviewsPage(null, null, 101)).thenReturn(Flux.empty());
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(BASE_URL).queryParam("limit", "100000").build())
+                .exchange()
+                .expectStatus().isOk();
+
+        Mockito.verify(reviewReactiveRepository).findReviewsPage(null, null, 101);
+    }
+
+    @Test
+    public void getReviewsPage_InvalidCursor() {
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(BASE_URL).queryParam("after", "not a cursor!").build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("after is not a valid cursor");
+    }
+
+    @Test
+    public void getReviews_UnsupportedFilter() {
+
+        var uri = UriComponentsBuilder.fromUriString(BASE_URL).queryParam("id", "1")
+                .buildAndExpand().toUri();
+
+        webTestClient.get()
+                .uri(uri)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Unsupported query parameter(s) : id");
+
+        Mockito.verify(reviewReactiveRepository, Mockito.never()).findAll();
+    }
+
+    @Test
+    public void getReviewSummary() {
+
+        var topReviews = List.of(new Review("1", "1", "Awesome Movie", 9.0));
+        Mockito.when(reviewReactiveRepository.findReviewSummary("1", 1, Sort.by(Sort.Direction.DESC, "rating", "reviewId")))
+                .thenReturn(Mono.just(new ReviewSummary("1", 2, 8.25, Map.of(9, 1L, 7, 1L), topReviews)));
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(BASE_URL + "/summary")
+                        .queryParam("movieInfoId", "1")
+                        .queryParam("top", "1")
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ReviewSummary.class)
+                .consumeWith(reviewSummaryEntityExchangeResult -> {
+                    var reviewSummary = reviewSummaryEntityExchangeResult.getResponseBody();
+                    assert reviewSummary != null;
+                    assertEquals(2, reviewSummary.getReviewCount());
+                    assertEquals(8.25, reviewSummary.getAverageRating());
+                    assertEquals(1L, reviewSummary.getRatingHistogram().get(7));
+                    assertEquals(1, reviewSummary.getTopReviews().size());
+                });
+    }
+
+    @Test
+    public void getReviewSummary_Validation() {
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(BASE_URL + "/summary").queryParam("movieInfoId", "1")
+                        .queryParam("top", "500").build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("top must be between 0 and 50");
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(BASE_URL + "/summary").queryParam("movieInfoId", "1")
+                        .queryParam("orderBy", "comment").build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("orderBy must be one of : rating,recent");
+
+        webTestClient.get()
+                .uri(BASE_URL + "/summary")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("movieInfoId must be present");
+    }
+
+    @Test
+    public void getReviewsGroupedByMovieInfoId() {
+
+        Mockito.when(reviewReactiveRepository.findReviewGroupsByMovieInfoIds(List.of("1", "2"), 1)).thenReturn(Flux.just(
+                new ReviewGroup("1", List.of(new Review(UUID.randomUUID().toString(), "1", "Awesome Movie", 9.0))),
+                new ReviewGroup("2", List.of(new Review(UUID.randomUUID().toString(), "2", "Good Movie", 7.5)))
+        ));
+
+        webTestClient.post()
+                .uri(BASE_URL + "/grouped")
+                .bodyValue(new ReviewGroupRequest(List.of("1", "2"), 1))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ReviewGroup.class)
+                .hasSize(2);
+    }
+
+    @Test
+    public void getReviewsGroupedByMovieInfoId_LimitPerMovieCapped() {
+
+        Mockito.when(reviewReactiveRepository.findReviewGroupsByMovieInfoIds(List.of("1"), 100)).thenReturn(Flux.just(
+                new ReviewGroup("1", List.of(new Review(UUID.randomUUID().toString(), "1", "Awesome Movie", 9.0)))
+        ));
+
+        webTestClient.post()
+                .uri(BASE_URL + "/grouped")
+                .bodyValue(new ReviewGroupRequest(List.of("1"), 1000))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ReviewGroup.class)
+                .hasSize(1);
+    }
+
+    @Test
+    public void getReviewsGroupedByMovieInfoId_Validation() {
+
+        webTestClient.post()
+                .uri(BASE_URL + "/grouped")
+                .bodyValue(new ReviewGroupRequest(List.of(), 0))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("reviewGroupRequest.limitPerMovie must be a positive value,reviewGroupRequest.movieInfoIds must be present");
+    }
+
+    @Test
+    void addReviews() {
+        var reviews = Flux.just(
+                new Review("r1", "1", "Awesome Movie", 9.0),
+                new Review(null, "1", "Awesome Movie", -9.0),
+                new Review("r3", "2", "Excellent Movie", 8.0));
+        Mockito.when(reviewReactiveRepository.insertReviews(ArgumentMatchers.anyList()))
+                .thenReturn(Mono.just(Map.of(1, new DuplicateKeyException("E11000 duplicate key error"))));
+
+        var results = webTestClient.post()
+                .uri(BASE_URL + "/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(reviews, Review.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(ReviewBatchResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertEquals(List.of(
+                ReviewBatchResult.created(0, "r1"),
+                ReviewBatchResult.invalid(1, "rating.negative : please pass a non-negative value"),
+                ReviewBatchResult.failed(2, "E11000 duplicate key error")), results);
+        // only the valid reviews are written, in the order of the request
+        Mockito.verify(reviewReactiveRepository).insertReviews(ArgumentMatchers.argThat(chunk -> chunk.size() == 2
+                && chunk.get(0).getReviewId().equals("r1") && chunk.get(1).getReviewId().equals("r3")));
+    }
+
+    @Test
+    void addReviews_Chunked() {
+        ReflectionTestUtils.setField(reviewHandler, "batchChunkSize", 2);
+        var reviews = Flux.range(0, 5)
+                .map(i -> new Review("r" + i, "1", "Awesome Movie", 9.0));
+        Mockito.when(reviewReactiveRepository.insertReviews(ArgumentMatchers.anyList()))
+                .thenReturn(Mono.just(Map.of()));
+
+        try {
+            webTestClient.post()
+                    .uri(BASE_URL + "/batch")
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(reviews, Review.class)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .returnResult(ReviewBatchResult.class)
+                    .getResponseBody()
+                    .as(StepVerifier::create)
+                    .expectNextCount(5)
+                    .verifyComplete();
+        } finally {
+            ReflectionTestUtils.setField(reviewHandler, "batchChunkSize", 500);
+        }
+
+        Mockito.verify(reviewReactiveRepository, Mockito.times(3)).insertReviews(ArgumentMatchers.anyList());
+    }
 }
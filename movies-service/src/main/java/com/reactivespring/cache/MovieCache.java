@@ -0,0 +1,116 @@
+package com.reactivespring.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reactivespring.deadline.Deadline;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.exception.DeadlineExceededException;
+import com.reactivespring.service.MovieService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Near cache of composed movies. Once an entry is older than refresh-after the stale movie is still served
+ * while a reload runs in the background; entries are only dropped after expire-after or when evicted.
+ */
+@Component
+@Slf4j
+public class MovieCache {
+
+    private final MovieService movieService;
+
+    private final boolean enabled;
+
+    private final Duration loadTimeout;
+
+    private final AsyncLoadingCache<String, Movie> cache;
+
+    public MovieCache(MovieService movieService,
+                      MeterRegistry meterRegistry,
+                      @Value("${movies.cache.enabled:true}") boolean enabled,
+                      @Value("${movies.cache.max-entries:10000}") long maxEntries,
+                      @Value("${movies.cache.max-weight:0}") long maxWeight,
+                      @Value("${movies.cache.refresh-after:30s}") Duration refreshAfter,
+                      @Value("${movies.cache.expire-after:10m}") Duration expireAfter,
+                      @Value("${movies.cache.load-timeout:5s}") Duration loadTimeout) {
+        this.movieService = movieService;
+        this.enabled = enabled;
+        this.loadTimeout = loadTimeout;
+
+        var builder = Caffeine.newBuilder()
+                .refreshAfterWrite(refreshAfter)
+                .expireAfterWrite(expireAfter)
+                .recordStats();
+        if (maxWeight > 0) {
+            // a movie weighs one plus its number of reviews, so a few heavily reviewed titles can't crowd the rest out
+            builder.maximumWeight(maxWeight)
+                    .weigher((String movieId, Movie movie) -> 1 + movie.getReviewList().size());
+        } else {
+            builder.maximumSize(maxEntries);
+        }
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, builder.buildAsync(new MovieLoader()), "movies");
+    }
+
+    public Mono<Movie> get(String movieId) {
+        if (!enabled) {
+            return movieService.retrieveMovie(movieId);
+        }
+        // concurrent misses share one load, which runs within load-timeout rather than the deadline of whichever caller
+        // started it; each caller waits for its own copy of it within its own deadline
+        return Deadline.current().flatMap(deadline -> {
+                    var movie = Mono.fromFuture(cache.get(movieId).copy());
+                    if (deadline.isEmpty()) {
+                        return movie;
+                    }
+                    return movie.timeout(deadline.get().remaining(), Mono.error(() -> new DeadlineExceededException(
+                            "Request deadline exceeded while loading movie " + movieId)));
+                })
+                .doOnNext(movie -> {
+                    if (movie.isReviewsDegraded()) {
+                        // serve it, but don't keep a movie without reviews around for the whole TTL
+                        cache.synchronous().asMap().remove(movieId, movie);
+                    }
+                });
+    }
+
+    public void evict(String movieId) {
+        log.info("Evicting movie {} from the cache", movieId);
+        cache.synchronous().invalidate(movieId);
+    }
+
+    public void evictAll() {
+        log.info("Evicting all movies from the cache");
+        cache.synchronous().invalidateAll();
+    }
+
+    /**
+     * Loads and refreshes outside of any request, so bounded by load-timeout instead of a request deadline.
+     */
+    private class MovieLoader implements AsyncCacheLoader<String, Movie> {
+
+        @Override
+        public CompletableFuture<Movie> asyncLoad(String movieId, Executor executor) {
+            return movieService.retrieveMovie(movieId)
+                    .timeout(loadTimeout)
+                    .toFuture();
+        }
+
+        @Override
+        public CompletableFuture<Movie> asyncReload(String movieId, Movie oldMovie, Executor executor) {
+            // a refresh that lost its reviews would be a downgrade, keep the stale movie until the next attempt
+            return movieService.retrieveMovie(movieId)
+                    .timeout(loadTimeout)
+                    .map(movie -> movie.isReviewsDegraded() ? oldMovie : movie)
+                    .toFuture();
+        }
+    }
+}
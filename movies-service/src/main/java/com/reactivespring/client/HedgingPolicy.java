@@ -0,0 +1,141 @@
+package com.reactivespring.client;
+
+import com.reactivespring.config.WebClientProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second, identical request when the first one has not answered within the configured percentile of
+ * recent latencies, and takes whichever answers with a value first; the other one is cancelled. Hedges are paid for
+ * out of a budget that every request tops up by {@code max-ratio}, so at most that share of requests is ever hedged
+ * and a slow downstream does not get twice the load.
+ */
+public class HedgingPolicy {
+
+    // the budget can be saved up to this many hedges, to absorb a short burst of slow responses
+    private static final double MAX_BUDGET = 10;
+
+    // below this many latency samples the percentile is meaningless and nothing is hedged
+    private static final int MIN_SAMPLES = 20;
+
+    private static final int SAMPLES_PER_DELAY_UPDATE = 50;
+
+    private final WebClientProperties.Hedging hedging;
+
+    private final long[] latencies;
+
+    private long latencyCount;
+
+    private int nextLatency;
+
+    private volatile Duration hedgeDelay;
+
+    private double budget;
+
+    private final Counter sentHedges;
+
+    private final Counter throttledHedges;
+
+    private final Counter wonHedges;
+
+    public HedgingPolicy(String downstream, WebClientProperties.Hedging hedging, MeterRegistry meterRegistry) {
+        this.hedging = hedging;
+        this.latencies = new long[hedging.getWindow()];
+        this.sentHedges = hedgeCounter(downstream, "sent", meterRegistry);
+        this.throttledHedges = hedgeCounter(downstream, "throttled", meterRegistry);
+        this.wonHedges = hedgeCounter(downstream, "won", meterRegistry);
+    }
+
+    public <T> Mono<T> execute(Supplier<Mono<T>> call) {
+        if (!hedging.isEnabled()) {
+            return call.get();
+        }
+        return Mono.defer(() -> {
+            deposit();
+            var delay = hedgeDelay;
+            var primaryError = new AtomicReference<Throwable>();
+            var primaryEnded = Sinks.empty();
+            var primary = timed(call.get())
+                    .doOnError(primaryError::set)
+                    .doFinally(signalType -> primaryEnded.tryEmitEmpty());
+            if (delay == null) {
+                return primary;
+            }
+            // a hedge that is not sent completes empty, and is not sent once the primary has ended without a value
+            var hedge = Mono.delay(delay)
+                    .takeUntilOther(primaryEnded.asMono())
+                    .flatMap(tick -> {
+                        if (!withdraw()) {
+                            throttledHedges.increment();
+                            return Mono.<T>empty();
+                        }
+                        sentHedges.increment();
+                        return timed(call.get()).doOnNext(value -> wonHedges.increment());
+                    });
+            // an error or an empty answer only ends the race once both attempts have ended without a value, and
+            // then the outcome is the primary's
+            return Mono.firstWithValue(primary, hedge)
+                    .onErrorResume(NoSuchElementException.class, ex -> primaryError.get() != null
+                            ? Mono.error(primaryError.get()) : Mono.empty());
+        });
+    }
+
+    /**
+     * Only attempts that answer are recorded; a cancelled loser or a failure says nothing about the latency.
+     */
+    private <T> Mono<T> timed(Mono<T> attempt) {
+        return Mono.defer(() -> {
+            var start = System.nanoTime();
+            return attempt.doOnSuccess(value -> record(Duration.ofNanos(System.nanoTime() - start)));
+        });
+    }
+
+    synchronized void record(Duration latency) {
+        latencies[nextLatency] = latency.toNanos();
+        nextLatency = (nextLatency + 1) % latencies.length;
+        latencyCount++;
+        if (latencyCount >= MIN_SAMPLES && (latencyCount - MIN_SAMPLES) % SAMPLES_PER_DELAY_UPDATE == 0) {
+            updateHedgeDelay();
+        }
+    }
+
+    private void updateHedgeDelay() {
+        var samples = Arrays.copyOf(latencies, (int) Math.min(latencyCount, latencies.length));
+        Arrays.sort(samples);
+        var index = (int) Math.ceil(hedging.getPercentile() * samples.length) - 1;
+        var percentileLatency = Duration.ofNanos(samples[Math.max(index, 0)]);
+        hedgeDelay = percentileLatency.compareTo(hedging.getMinDelay()) < 0 ? hedging.getMinDelay() : percentileLatency;
+    }
+
+    private synchronized void deposit() {
+        budget = Math.min(budget + hedging.getMaxRatio(), MAX_BUDGET);
+    }
+
+    private synchronized boolean withdraw() {
+        if (budget < 1) {
+            return false;
+        }
+        budget--;
+        return true;
+    }
+
+    Duration getHedgeDelay() {
+        return hedgeDelay;
+    }
+
+    private static Counter hedgeCounter(String downstream, String result, MeterRegistry meterRegistry) {
+        return Counter.builder("movies.client.hedged.requests")
+                .description("Hedge requests that were sent, skipped for lack of budget (throttled) or answered first (won)")
+                .tag("downstream", downstream)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
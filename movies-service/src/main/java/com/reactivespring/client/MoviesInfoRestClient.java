@@ -1,9 +1,17 @@
 package com.reactivespring.client;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchRequest;
+import com.reactivespring.domain.MovieInfoBatchResponse;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.config.WebClientProperties;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
@@ -11,22 +19,40 @@ import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @Component
 @Slf4j
 public class MoviesInfoRestClient {
 
     private final WebClient webClient;
 
+    private final SingleFlight<String, MovieInfo> movieInfoLookups;
+
+    private final HedgingPolicy hedgingPolicy;
+
+    private final ResiliencePolicy resiliencePolicy;
 
     @Value("${restClient.moviesInfoURL}")
     private String moviesInfoUrl;
 
 
-    public MoviesInfoRestClient(WebClient webClient) {
+    public MoviesInfoRestClient(@Qualifier("moviesInfoWebClient") WebClient webClient, MeterRegistry meterRegistry,
+                                 WebClientProperties webClientProperties, CircuitBreakerRegistry circuitBreakerRegistry,
+                                 BulkheadRegistry bulkheadRegistry, RetryRegistry retryRegistry) {
         this.webClient = webClient;
+        this.movieInfoLookups = new SingleFlight<>("movies-info", meterRegistry);
+        this.hedgingPolicy = new HedgingPolicy("movies-info", webClientProperties.getMoviesInfo().getHedging(), meterRegistry);
+        this.resiliencePolicy = new ResiliencePolicy("movies-info", circuitBreakerRegistry, bulkheadRegistry,
+                retryRegistry, meterRegistry);
     }
 
     public Mono<MovieInfo> retrieveMovieInfo(String movieId) {
+        return movieInfoLookups.execute(movieId,
+                id -> hedgingPolicy.execute(() -> resiliencePolicy.execute(fetchMovieInfo(id))));
+    }
+
+    private Mono<MovieInfo> fetchMovieInfo(String movieId) {
         var getMovieInfoUrl =
                 UriComponentsBuilder.fromHttpUrl(moviesInfoUrl).pathSegment(movieId).buildAndExpand().toUriString();
         return webClient.get().uri(getMovieInfoUrl, movieId)
@@ -47,4 +73,26 @@ public class MoviesInfoRestClient {
                 .bodyToMono(MovieInfo.class)
                 .log();
     }
+
+    public Mono<MovieInfoBatchResponse> retrieveMovieInfos(List<String> movieIds) {
+        return resiliencePolicy.execute(fetchMovieInfos(movieIds));
+    }
+
+    private Mono<MovieInfoBatchResponse> fetchMovieInfos(List<String> movieIds) {
+        var batchGetUrl = moviesInfoUrl + ":batchGet";
+        return webClient.post().uri(batchGetUrl)
+                .bodyValue(new MovieInfoBatchRequest(movieIds))
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, (clientResponse -> {
+                    log.info("Status code : {}", clientResponse.statusCode().value());
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(response -> Mono.error(new MoviesInfoClientException(response, clientResponse.statusCode().value())));
+                })).onStatus(HttpStatus::is5xxServerError, (clientResponse -> {
+                    log.info("Status code : {}", clientResponse.statusCode().value());
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(response -> Mono.error(new MoviesInfoServerException(response)));
+                }))
+                .bodyToMono(MovieInfoBatchResponse.class)
+                .log();
+    }
 }
@@ -1,33 +1,153 @@
 package com.reactivespring.client;
 
+import com.reactivespring.config.WebClientProperties;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewGroup;
+import com.reactivespring.domain.ReviewGroupRequest;
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.exception.ReviewsClientException;
+import com.reactivespring.exception.ReviewsServerException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
 
 @Component
+@Slf4j
 public class MoviesReviewRestClient {
 
     private final WebClient webClient;
 
+    private final SingleFlight<String, List<Review>> reviewLookups;
+
+    private final HedgingPolicy hedgingPolicy;
+
+    private final ResiliencePolicy resiliencePolicy;
+
+    // movies-review-service answers GET /v1/reviews one page at a time, this header is absent on the last one
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Value("${restClient.moviesReviewURL}")
     private String moviesReviewUrl;
 
+    // at most reviews.page.max-size of movies-review-service
+    @Value("${movies.reviews.page-size:100}")
+    private int reviewsPageSize;
+
 
-    public MoviesReviewRestClient(WebClient webClient) {
+    public MoviesReviewRestClient(@Qualifier("moviesReviewWebClient") WebClient webClient, MeterRegistry meterRegistry,
+                                   WebClientProperties webClientProperties, CircuitBreakerRegistry circuitBreakerRegistry,
+                                   BulkheadRegistry bulkheadRegistry, RetryRegistry retryRegistry) {
         this.webClient = webClient;
+        this.reviewLookups = new SingleFlight<>("movies-review", meterRegistry);
+        this.hedgingPolicy = new HedgingPolicy("movies-review", webClientProperties.getMoviesReview().getHedging(), meterRegistry);
+        this.resiliencePolicy = new ResiliencePolicy("movies-review", circuitBreakerRegistry, bulkheadRegistry,
+                retryRegistry, meterRegistry);
     }
 
 
     public Flux<Review> retrieveReviews(String movieId) {
+        return reviewLookups.execute(movieId,
+                        id -> hedgingPolicy.execute(() -> resiliencePolicy.execute(fetchReviews(id))))
+                .flatMapIterable(reviews -> reviews);
+    }
+
+    /**
+     * Reviews as they are decoded off the wire, without collecting them; not coalesced or hedged, as both
+     * would need the whole list. The reviews come as NDJSON and are only read as fast as they are consumed,
+     * a consumer that takes the first few and cancels stops movies-review-service from sending the rest.
+     */
+    public Flux<Review> streamReviews(String movieId) {
+        return resiliencePolicy.execute(fetchReviewStream(movieId));
+    }
+
+    private Mono<List<Review>> fetchReviews(String movieId) {
+        return fetchReviewStream(movieId).collectList();
+    }
+
+    /**
+     * Every review of the movie, read one page of reviews-page-size at a time; the next page is only asked for
+     * once the current one has been consumed.
+     */
+    private Flux<Review> fetchReviewStream(String movieId) {
+        return fetchReviewPages(movieId, null);
+    }
 
-        var url =
-                UriComponentsBuilder.fromHttpUrl(moviesReviewUrl).queryParam("id", movieId).buildAndExpand().toUriString();
-        return webClient.get().uri(url)
+    private Flux<Review> fetchReviewPages(String movieId, String after) {
+
+        var url = UriComponentsBuilder.fromHttpUrl(moviesReviewUrl)
+                .queryParam("movieInfoId", movieId)
+                .queryParam("limit", reviewsPageSize);
+        if (after != null) {
+            url.queryParam("after", after);
+        }
+        return webClient.get().uri(url.encode().build().toUri())
+                .accept(MediaType.APPLICATION_NDJSON)
                 .retrieve()
-                .bodyToFlux(Review.class)
-                .log();
+                .onStatus(HttpStatus::is4xxClientError, this::clientException)
+                .onStatus(HttpStatus::is5xxServerError, this::serverException)
+                .toEntityFlux(Review.class)
+                .flatMapMany(page -> {
+                    var nextCursor = page.getHeaders().getFirst(NEXT_CURSOR_HEADER);
+                    var reviews = page.getBody().log();
+                    return nextCursor == null
+                            ? reviews
+                            : Flux.concat(reviews, Flux.defer(() -> fetchReviewPages(movieId, nextCursor)));
+                });
+    }
+
+    public Flux<ReviewGroup> retrieveReviewGroups(List<String> movieIds, Integer limitPerMovie) {
+
+        var url = UriComponentsBuilder.fromHttpUrl(moviesReviewUrl).pathSegment("grouped").buildAndExpand().toUriString();
+        return resiliencePolicy.execute(webClient.post().uri(url)
+                .bodyValue(new ReviewGroupRequest(movieIds, limitPerMovie))
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, this::clientException)
+                .onStatus(HttpStatus::is5xxServerError, this::serverException)
+                .bodyToFlux(ReviewGroup.class)
+                .log());
+    }
+
+    public Mono<ReviewSummary> retrieveReviewSummary(String movieId, int topReviews, String orderBy) {
+
+        var url = UriComponentsBuilder.fromHttpUrl(moviesReviewUrl).pathSegment("summary")
+                .queryParam("movieInfoId", movieId)
+                .queryParam("top", topReviews)
+                .queryParam("orderBy", orderBy)
+                .buildAndExpand().toUriString();
+        return resiliencePolicy.execute(webClient.get().uri(url)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, this::clientException)
+                .onStatus(HttpStatus::is5xxServerError, this::serverException)
+                .bodyToMono(ReviewSummary.class)
+                .log());
+    }
+
+    private Mono<? extends Throwable> clientException(ClientResponse clientResponse) {
+        log.info("Status code : {}", clientResponse.statusCode().value());
+        return clientResponse.bodyToMono(String.class)
+                .defaultIfEmpty(clientResponse.statusCode().getReasonPhrase())
+                .flatMap(response -> Mono.error(new ReviewsClientException(response)));
+    }
+
+    private Mono<? extends Throwable> serverException(ClientResponse clientResponse) {
+        log.info("Status code : {}", clientResponse.statusCode().value());
+        return clientResponse.bodyToMono(String.class)
+                .defaultIfEmpty(clientResponse.statusCode().getReasonPhrase())
+                .flatMap(response -> Mono.error(new ReviewsServerException(response)));
     }
 }
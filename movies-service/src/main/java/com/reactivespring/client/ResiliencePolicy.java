@@ -0,0 +1,64 @@
+package com.reactivespring.client;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Circuit breaker, bulkhead and retry of one downstream, configured under resilience4j in application.yml by the
+ * downstream's name. While the breaker is open calls fail right away with CallNotPermittedException, and calls
+ * beyond the bulkhead's concurrency fail with BulkheadFullException, instead of waiting on a downstream that is
+ * not answering. Each retry goes through the breaker and the bulkhead again.
+ */
+@Slf4j
+public class ResiliencePolicy {
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final Bulkhead bulkhead;
+
+    private final Retry retry;
+
+    public ResiliencePolicy(String downstream, CircuitBreakerRegistry circuitBreakerRegistry,
+                            BulkheadRegistry bulkheadRegistry, RetryRegistry retryRegistry, MeterRegistry meterRegistry) {
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(downstream);
+        this.bulkhead = bulkheadRegistry.bulkhead(downstream);
+        this.retry = retryRegistry.retry(downstream);
+
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            var transition = event.getStateTransition();
+            log.warn("Circuit breaker of {} went from {} to {}", downstream, transition.getFromState(),
+                    transition.getToState());
+            Counter.builder("movies.client.circuitbreaker.transitions")
+                    .description("State transitions of the circuit breaker of a downstream")
+                    .tag("downstream", downstream)
+                    .tag("from", transition.getFromState().name())
+                    .tag("to", transition.getToState().name())
+                    .register(meterRegistry)
+                    .increment();
+        });
+    }
+
+    public <T> Mono<T> execute(Mono<T> call) {
+        return call.transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(RetryOperator.of(retry));
+    }
+
+    public <T> Flux<T> execute(Flux<T> call) {
+        return call.transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(RetryOperator.of(retry));
+    }
+}
@@ -0,0 +1,29 @@
+package com.reactivespring.client;
+
+import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.exception.ReviewsServerException;
+import io.netty.channel.ConnectTimeoutException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+
+import java.net.ConnectException;
+import java.util.function.Predicate;
+
+/**
+ * Errors worth another attempt: a 5xx answer, or a connection that could not be established, in which case the
+ * request never reached the downstream. Timeouts are not retried, the request may well still be running there.
+ * Referenced from resilience4j.retry in application.yml.
+ */
+public class RetryableDownstreamError implements Predicate<Throwable> {
+
+    @Override
+    public boolean test(Throwable throwable) {
+        if (throwable instanceof MoviesInfoServerException || throwable instanceof ReviewsServerException) {
+            return true;
+        }
+        if (throwable instanceof WebClientRequestException) {
+            var cause = throwable.getCause();
+            return cause instanceof ConnectException || cause instanceof ConnectTimeoutException;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,74 @@
+package com.reactivespring.client;
+
+import com.reactivespring.deadline.Deadline;
+import com.reactivespring.exception.DeadlineExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent lookups of the same key into one downstream call whose result every caller
+ * shares. The call is forgotten as soon as it terminates, so nothing is cached beyond its lifetime.
+ * The coalescing ratio is {@code follower / (leader + follower)} of the
+ * {@code movies.client.coalesced.requests} counter.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter leaderRequests;
+
+    private final Counter followerRequests;
+
+    public SingleFlight(String downstream, MeterRegistry meterRegistry) {
+        this.leaderRequests = Counter.builder("movies.client.coalesced.requests")
+                .description("Lookups that issued a downstream call (leader) or joined one already in flight (follower)")
+                .tag("downstream", downstream)
+                .tag("role", "leader")
+                .register(meterRegistry);
+        this.followerRequests = Counter.builder("movies.client.coalesced.requests")
+                .description("Lookups that issued a downstream call (leader) or joined one already in flight (follower)")
+                .tag("downstream", downstream)
+                .tag("role", "follower")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The shared call runs without the Deadline of the caller that started it; each caller waits for it within its
+     * own remaining budget, and the call is cancelled once every caller has gone.
+     */
+    public Mono<V> execute(K key, Function<K, Mono<V>> call) {
+        return Deadline.current().flatMap(deadline -> {
+            var leader = new AtomicBoolean();
+            var shared = inFlight.computeIfAbsent(key, k -> {
+                leader.set(true);
+                return share(k, call.apply(k));
+            });
+            (leader.get() ? leaderRequests : followerRequests).increment();
+            if (deadline.isEmpty()) {
+                return shared;
+            }
+            return shared.timeout(deadline.get().remaining(), Mono.error(() -> new DeadlineExceededException(
+                    "Request deadline exceeded while waiting for the lookup of " + key)));
+        });
+    }
+
+    private Mono<V> share(K key, Mono<V> call) {
+        var shared = new AtomicReference<Mono<V>>();
+        shared.set(call
+                .contextWrite(context -> context.delete(Deadline.class))
+                .doFinally(signalType -> inFlight.remove(key, shared.get()))
+                .flux()
+                // unlike cache(), cancels the call when the last caller cancels
+                .replay(1)
+                .refCount(1)
+                .singleOrEmpty());
+        return shared.get();
+    }
+}
@@ -1,15 +1,78 @@
 package com.reactivespring.config;
 
 
+import com.reactivespring.deadline.DeadlineExchangeFilter;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.concurrent.TimeUnit;
 
 @Configuration
+@EnableConfigurationProperties(WebClientProperties.class)
 public class WebClientConfig {
 
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider moviesInfoConnectionProvider(WebClientProperties properties) {
+        return connectionProvider("movies-info", properties.getMoviesInfo());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider moviesReviewConnectionProvider(WebClientProperties properties) {
+        return connectionProvider("movies-review", properties.getMoviesReview());
+    }
+
+    @Bean
+    public WebClient moviesInfoWebClient(WebClient.Builder builder, WebClientProperties properties,
+                                         @Qualifier("moviesInfoConnectionProvider") ConnectionProvider connectionProvider) {
+        return webClient(builder, connectionProvider, properties.getMoviesInfo());
+    }
+
     @Bean
-    public WebClient webClient(WebClient.Builder builder) {
-        return builder.build();
+    public WebClient moviesReviewWebClient(WebClient.Builder builder, WebClientProperties properties,
+                                           @Qualifier("moviesReviewConnectionProvider") ConnectionProvider connectionProvider) {
+        return webClient(builder, connectionProvider, properties.getMoviesReview());
+    }
+
+    /**
+     * metrics(true) publishes the reactor.netty.connection.provider.* gauges (active, idle, pending and total
+     * connections), tagged with the pool name.
+     */
+    private ConnectionProvider connectionProvider(String name, WebClientProperties.Downstream downstream) {
+        return ConnectionProvider.builder(name)
+                .maxConnections(downstream.getMaxConnections())
+                .pendingAcquireMaxCount(downstream.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(downstream.getPendingAcquireTimeout())
+                .maxIdleTime(downstream.getMaxIdleTime())
+                .maxLifeTime(downstream.getMaxLifeTime())
+                .evictInBackground(downstream.getEvictInBackground())
+                .metrics(true)
+                .build();
+    }
+
+    private WebClient webClient(WebClient.Builder builder, ConnectionProvider connectionProvider,
+                                WebClientProperties.Downstream downstream) {
+        var httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) downstream.getConnectTimeout().toMillis())
+                .responseTimeout(downstream.getResponseTimeout())
+                // added per request, so that it is removed again before the connection goes back to the pool
+                // (or, with h2c, sits on the stream rather than on the shared connection)
+                .doOnRequest((request, connection) -> connection.addHandlerLast(
+                        new ReadTimeoutHandler(downstream.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS)));
+        if (downstream.isHttp2()) {
+            // concurrent requests are multiplexed as streams over the pooled connections
+            httpClient = httpClient.protocol(HttpProtocol.H2C);
+        }
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter(new DeadlineExchangeFilter())
+                .build();
     }
 }
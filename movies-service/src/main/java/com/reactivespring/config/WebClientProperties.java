@@ -0,0 +1,64 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Connection pool and timeout settings, one set per downstream service.
+ */
+@Data
+@ConfigurationProperties("webclient")
+public class WebClientProperties {
+
+    private Downstream moviesInfo = new Downstream();
+
+    private Downstream moviesReview = new Downstream();
+
+    @Data
+    public static class Downstream {
+
+        // h2c with prior knowledge, the downstream has to run with server.http2.enabled=true
+        private boolean http2 = false;
+
+        private int maxConnections = 500;
+
+        // requests allowed to wait for a connection once the pool is exhausted, -1 means unbounded
+        private int pendingAcquireMaxCount = 1000;
+
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+
+        // how often idle and expired connections are closed, instead of only when they are next acquired
+        private Duration evictInBackground = Duration.ofSeconds(30);
+
+        private Duration connectTimeout = Duration.ofSeconds(2);
+
+        private Duration readTimeout = Duration.ofSeconds(5);
+
+        private Duration responseTimeout = Duration.ofSeconds(5);
+
+        private Hedging hedging = new Hedging();
+    }
+
+    @Data
+    public static class Hedging {
+
+        private boolean enabled = false;
+
+        // a second request is sent once the first is slower than this percentile of recent latencies
+        private double percentile = 0.95;
+
+        private Duration minDelay = Duration.ofMillis(10);
+
+        // share of requests that may be hedged, so hedging can't double the load on a struggling downstream
+        private double maxRatio = 0.1;
+
+        // number of recent latencies the percentile is taken over
+        private int window = 1000;
+    }
+}
@@ -0,0 +1,32 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.cache.MovieCache;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/v1/admin/cache/movies")
+public class MovieCacheAdminController {
+
+    private final MovieCache movieCache;
+
+    public MovieCacheAdminController(MovieCache movieCache) {
+        this.movieCache = movieCache;
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void evictMovie(@PathVariable("id") String movieId) {
+        movieCache.evict(movieId);
+    }
+
+    @DeleteMapping
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void evictAllMovies() {
+        movieCache.evictAll();
+    }
+}
@@ -1,35 +1,59 @@
 package com.reactivespring.controller;
 
-import com.reactivespring.client.MoviesInfoRestClient;
-import com.reactivespring.client.MoviesReviewRestClient;
+import com.reactivespring.cache.MovieCache;
 import com.reactivespring.domain.Movie;
-import lombok.extern.slf4j.Slf4j;
+import com.reactivespring.domain.MovieEvent;
+import com.reactivespring.service.MovieService;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @RestController
-@Slf4j
 @RequestMapping("/v1/movies")
 public class MovieServiceController {
 
-    private final MoviesInfoRestClient moviesInfoRestClient;
+    private final MovieService movieService;
 
-    private final MoviesReviewRestClient moviesReviewRestClient;
+    private final MovieCache movieCache;
 
-    public MovieServiceController(MoviesInfoRestClient moviesInfoRestClient, MoviesReviewRestClient moviesReviewRestClient) {
-        this.moviesInfoRestClient = moviesInfoRestClient;
-        this.moviesReviewRestClient = moviesReviewRestClient;
+    public MovieServiceController(MovieService movieService, MovieCache movieCache) {
+        this.movieService = movieService;
+        this.movieCache = movieCache;
     }
 
     @GetMapping("/{id}")
     Mono<Movie> getMovieById(@PathVariable("id") String movieId) {
-        return moviesInfoRestClient.retrieveMovieInfo(movieId)
-                .flatMap(movieInfo -> {
-                    var reviewListMono = moviesReviewRestClient.retrieveReviews(movieId).collectList();
-                    return reviewListMono.map(reviews -> new Movie(movieInfo, reviews));
-                });
+        return movieCache.get(movieId);
+    }
+
+    @GetMapping(value = "/{id}", params = "reviews=summary")
+    Mono<Movie> getMovieWithReviewSummaryById(@PathVariable("id") String movieId,
+                                              @RequestParam(value = "top", defaultValue = "5") int topReviews,
+                                              @RequestParam(value = "orderBy", defaultValue = "rating") String orderBy) {
+        return movieService.retrieveMovieWithReviewSummary(movieId, topReviews, orderBy);
+    }
+
+    @GetMapping(value = "/{id}/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    Flux<MovieEvent> streamMovieById(@PathVariable("id") String movieId) {
+        return movieService.streamMovie(movieId);
+    }
+
+    @GetMapping(params = "ids")
+    Flux<Movie> getMoviesByIds(@RequestParam("ids") List<String> movieIds) {
+        return movieService.retrieveMovies(movieIds);
+    }
+
+    @PostMapping("/batch")
+    Flux<Movie> getMoviesByIdsBatch(@RequestBody List<String> movieIds) {
+        return movieService.retrieveMovies(movieIds);
     }
 }
@@ -0,0 +1,38 @@
+package com.reactivespring.deadline;
+
+import com.reactivespring.exception.DeadlineExceededException;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * Hands what is left of the request's {@link Deadline} to the downstream service as the
+ * {@link Deadline#BUDGET_HEADER} header and gives up on the call once that time is up.
+ */
+public class DeadlineExchangeFilter implements ExchangeFilterFunction {
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Deadline.current().flatMap(deadline -> {
+            if (deadline.isEmpty()) {
+                return next.exchange(request);
+            }
+            var remaining = deadline.get().remaining();
+            if (remaining.isZero()) {
+                return Mono.error(deadlineExceeded(request));
+            }
+            var budgetedRequest = ClientRequest.from(request)
+                    .header(Deadline.BUDGET_HEADER, String.valueOf(remaining.toMillis()))
+                    .build();
+            return next.exchange(budgetedRequest)
+                    .timeout(remaining, Mono.error(() -> deadlineExceeded(request)));
+        });
+    }
+
+    private DeadlineExceededException deadlineExceeded(ClientRequest request) {
+        return new DeadlineExceededException("Request deadline exceeded before " + request.method() + " "
+                + request.url() + " answered");
+    }
+}
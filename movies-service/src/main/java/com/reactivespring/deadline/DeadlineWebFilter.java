@@ -0,0 +1,92 @@
+package com.reactivespring.deadline;
+
+import com.reactivespring.exception.DeadlineExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Puts the request's {@link Deadline} into the Reactor Context and cancels the request once it has passed,
+ * which also cancels the downstream calls and Mongo queries still running for it.
+ * The budget comes from the {@link Deadline#BUDGET_HEADER} header, capped at deadline.max-budget, or else
+ * from deadline.default-budget; requests with neither run without a deadline. The default budget does not apply to
+ * deadline.streaming-paths: a stream lasts as long as it has items to send, and cutting it off after its headers
+ * were sent could only truncate the body.
+ */
+@Component
+@Slf4j
+public class DeadlineWebFilter implements WebFilter {
+
+    @Value("${deadline.default-budget:#{null}}")
+    private Duration defaultBudget;
+
+    @Value("${deadline.max-budget:30s}")
+    private Duration maxBudget;
+
+    private List<PathPattern> streamingPaths = List.of();
+
+    @Value("${deadline.streaming-paths:/v1/movies/*/stream}")
+    void setStreamingPaths(List<String> streamingPaths) {
+        this.streamingPaths = streamingPaths.stream()
+                .map(PathPatternParser.defaultInstance::parse)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var budget = requestedBudget(exchange);
+        if (budget == null) {
+            return chain.filter(exchange);
+        }
+        var deadline = Deadline.after(budget);
+        return chain.filter(exchange)
+                .timeout(budget, Mono.defer(() -> deadlineExceeded(exchange, budget)))
+                .contextWrite(Context.of(Deadline.class, deadline));
+    }
+
+    /**
+     * Answered here rather than by the error handlers, since a @ControllerAdvice never sees errors raised
+     * outside of the handler.
+     */
+    private Mono<Void> deadlineExceeded(ServerWebExchange exchange, Duration budget) {
+        var ex = new DeadlineExceededException("Request deadline of " + budget.toMillis() + "ms exceeded");
+        log.warn("{} : {}", ex.getMessage(), exchange.getRequest().getPath());
+        var response = exchange.getResponse();
+        if (response.isCommitted()) {
+            return Mono.error(ex);
+        }
+        response.setStatusCode(HttpStatus.GATEWAY_TIMEOUT);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(ex.getMessage().getBytes())));
+    }
+
+    private Duration requestedBudget(ServerWebExchange exchange) {
+        var budgetHeader = exchange.getRequest().getHeaders().getFirst(Deadline.BUDGET_HEADER);
+        if (budgetHeader == null) {
+            return isStreaming(exchange) ? null : defaultBudget;
+        }
+        try {
+            var budget = Duration.ofMillis(Math.max(Long.parseLong(budgetHeader.trim()), 0));
+            return budget.compareTo(maxBudget) > 0 ? maxBudget : budget;
+        } catch (NumberFormatException ex) {
+            log.warn("Ignoring malformed {} header : {}", Deadline.BUDGET_HEADER, budgetHeader);
+            return isStreaming(exchange) ? null : defaultBudget;
+        }
+    }
+
+    private boolean isStreaming(ServerWebExchange exchange) {
+        var path = exchange.getRequest().getPath().pathWithinApplication();
+        return streamingPaths.stream().anyMatch(pattern -> pattern.matches(path));
+    }
+}
@@ -1,6 +1,7 @@
 package com.reactivespring.domain;
 
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,5 +14,23 @@ import java.util.List;
 public class Movie {
 
     private MovieInfo movieInfo;
+    // absent when the movie was asked for with a review summary instead
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<Review> reviewList;
+    // true when the reviews could not be fetched in time and reviewList was left empty
+    private boolean reviewsDegraded;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ReviewSummary reviewSummary;
+
+    public Movie(MovieInfo movieInfo, List<Review> reviewList) {
+        this(movieInfo, reviewList, false, null);
+    }
+
+    public Movie(MovieInfo movieInfo, ReviewSummary reviewSummary) {
+        this(movieInfo, null, false, reviewSummary);
+    }
+
+    public static Movie withDegradedReviews(MovieInfo movieInfo) {
+        return new Movie(movieInfo, List.of(), true, null);
+    }
 }
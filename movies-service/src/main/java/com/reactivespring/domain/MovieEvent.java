@@ -0,0 +1,38 @@
+package com.reactivespring.domain;
+
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One element of a streamed movie: the MovieInfo first, then one event per review, and a REVIEWS_DEGRADED event
+ * when the reviews stopped arriving before the end.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MovieEvent {
+
+    public enum Type {
+        MOVIE_INFO, REVIEW, REVIEWS_DEGRADED
+    }
+
+    private Type type;
+    private MovieInfo movieInfo;
+    private Review review;
+
+    public static MovieEvent movieInfo(MovieInfo movieInfo) {
+        return new MovieEvent(Type.MOVIE_INFO, movieInfo, null);
+    }
+
+    public static MovieEvent review(Review review) {
+        return new MovieEvent(Type.REVIEW, null, review);
+    }
+
+    public static MovieEvent reviewsDegraded() {
+        return new MovieEvent(Type.REVIEWS_DEGRADED, null, null);
+    }
+}
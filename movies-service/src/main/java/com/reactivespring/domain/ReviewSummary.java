@@ -0,0 +1,22 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewSummary {
+
+    private String movieInfoId;
+    private long reviewCount;
+    // over the reviews that have a rating, null when none has
+    private Double averageRating;
+    // number of reviews per whole rating, a 7.5 counts towards 7
+    private Map<Integer, Long> ratingHistogram;
+    private List<Review> topReviews;
+}
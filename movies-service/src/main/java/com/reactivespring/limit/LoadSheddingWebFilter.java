@@ -0,0 +1,119 @@
+package com.reactivespring.limit;
+
+import com.netflix.concurrency.limits.Limiter;
+import com.netflix.concurrency.limits.limit.Gradient2Limit;
+import com.netflix.concurrency.limits.limiter.SimpleLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+
+/**
+ * Admission control in front of the movies endpoints. The number of requests allowed in flight follows the
+ * observed latency (Gradient2: it grows while latency stays near its long term average and shrinks as soon as
+ * requests start queueing behind a slow downstream), and requests over the limit are turned away at once with
+ * 503 and Retry-After instead of piling up until they all time out together.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class LoadSheddingWebFilter implements WebFilter {
+
+    private static final String MOVIES_PATH = "/v1/movies";
+
+    private final boolean enabled;
+
+    private final Duration retryAfter;
+
+    private final SimpleLimiter<Void> limiter;
+
+    private final Counter rejectedRequests;
+
+    public LoadSheddingWebFilter(MeterRegistry meterRegistry,
+                                 @Value("${movies.load-shedding.enabled:true}") boolean enabled,
+                                 @Value("${movies.load-shedding.initial-limit:50}") int initialLimit,
+                                 @Value("${movies.load-shedding.min-limit:10}") int minLimit,
+                                 @Value("${movies.load-shedding.max-limit:500}") int maxLimit,
+                                 @Value("${movies.load-shedding.retry-after:1s}") Duration retryAfter) {
+        this.enabled = enabled;
+        this.retryAfter = retryAfter;
+        this.limiter = SimpleLimiter.newBuilder()
+                .named("movies")
+                .limit(Gradient2Limit.newBuilder()
+                        .initialLimit(initialLimit)
+                        .minLimit(minLimit)
+                        .maxConcurrency(maxLimit)
+                        .build())
+                .build();
+
+        Gauge.builder("movies.load.shedding.limit", limiter, SimpleLimiter::getLimit)
+                .description("Requests currently allowed in flight")
+                .register(meterRegistry);
+        Gauge.builder("movies.load.shedding.inflight", limiter, SimpleLimiter::getInflight)
+                .description("Requests currently in flight")
+                .register(meterRegistry);
+        this.rejectedRequests = Counter.builder("movies.load.shedding.rejected")
+                .description("Requests turned away because the limit was reached")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!enabled || !exchange.getRequest().getPath().value().startsWith(MOVIES_PATH)) {
+            return chain.filter(exchange);
+        }
+        return Mono.defer(() -> {
+            var listener = limiter.acquire(null);
+            if (listener.isEmpty()) {
+                return reject(exchange);
+            }
+            return chain.filter(exchange)
+                    .doFinally(signalType -> release(listener.get(), signalType, exchange));
+        });
+    }
+
+    private void release(Limiter.Listener listener, SignalType signalType, ServerWebExchange exchange) {
+        if (signalType == SignalType.CANCEL || isStreaming(exchange)) {
+            // the caller went away, or the stream lasted as long as it had items, either way the latency says
+            // nothing about the downstreams
+            listener.onIgnore();
+            return;
+        }
+        var status = exchange.getResponse().getStatusCode();
+        if (signalType == SignalType.ON_ERROR || (status != null && status.is5xxServerError())) {
+            listener.onDropped();
+        } else {
+            listener.onSuccess();
+        }
+    }
+
+    private boolean isStreaming(ServerWebExchange exchange) {
+        var contentType = exchange.getResponse().getHeaders().getContentType();
+        return contentType != null && (contentType.isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                || contentType.isCompatibleWith(MediaType.TEXT_EVENT_STREAM));
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange) {
+        rejectedRequests.increment();
+        log.debug("Rejecting {}, {} requests in flight", exchange.getRequest().getPath(), limiter.getInflight());
+        var response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(retryAfter.toSeconds(), 1)));
+        var message = "Too many requests in flight, retry later";
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(message.getBytes())));
+    }
+}
@@ -0,0 +1,168 @@
+package com.reactivespring.service;
+
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.MoviesReviewRestClient;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieEvent;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewGroup;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class MovieService {
+
+    // the most movies-review-service hands out per summary
+    private static final int MAX_TOP_REVIEWS = 50;
+
+    private static final List<String> TOP_REVIEWS_ORDERS = List.of("rating", "recent");
+
+    private final MoviesInfoRestClient moviesInfoRestClient;
+
+    private final MoviesReviewRestClient moviesReviewRestClient;
+
+    @Value("${movies.reviews.degradation.enabled:false}")
+    private boolean reviewsDegradationEnabled;
+
+    @Value("${movies.reviews.degradation.timeout:2s}")
+    private Duration reviewsTimeout;
+
+    @Value("${movies.batch.max-ids:100}")
+    private int batchMaxIds;
+
+    @Value("${movies.batch.chunk-size:50}")
+    private int batchChunkSize;
+
+    @Value("${movies.batch.concurrency:4}")
+    private int batchConcurrency;
+
+    @Value("${movies.batch.reviews-per-movie:20}")
+    private int batchReviewsPerMovie;
+
+    public MovieService(MoviesInfoRestClient moviesInfoRestClient, MoviesReviewRestClient moviesReviewRestClient) {
+        this.moviesInfoRestClient = moviesInfoRestClient;
+        this.moviesReviewRestClient = moviesReviewRestClient;
+    }
+
+    /**
+     * Movies come back in the order of the requested ids; ids without a MovieInfo are left out.
+     */
+    public Flux<Movie> retrieveMovies(List<String> movieIds) {
+        var distinctIds = movieIds.stream().distinct().collect(Collectors.toList());
+        if (distinctIds.size() > batchMaxIds) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + batchMaxIds + " movie ids can be requested at once"));
+        }
+        return Flux.fromIterable(distinctIds)
+                .buffer(batchChunkSize)
+                .flatMapSequential(this::retrieveMovieChunk, batchConcurrency);
+    }
+
+    /**
+     * One batched call per downstream for the whole chunk, issued together.
+     */
+    private Flux<Movie> retrieveMovieChunk(List<String> movieIds) {
+        return Mono.zip(moviesInfoRestClient.retrieveMovieInfos(movieIds), retrieveReviewGroups(movieIds),
+                        (batchResponse, reviewsByMovieId) -> {
+                            if (!batchResponse.getMissingIds().isEmpty()) {
+                                log.info("Skipping movies without MovieInfo : {}", batchResponse.getMissingIds());
+                            }
+                            return batchResponse.getMovieInfos().stream()
+                                    .map(movieInfo -> toMovie(movieInfo, reviewsByMovieId
+                                            .map(reviewGroups -> reviewGroups.getOrDefault(movieInfo.getMovieInfoId(), List.of()))))
+                                    .collect(Collectors.toList());
+                        })
+                .flatMapIterable(Function.identity());
+    }
+
+    public Mono<Movie> retrieveMovie(String movieId) {
+        // both downstream calls are subscribed together, so latency is set by the slower one
+        return Mono.zip(moviesInfoRestClient.retrieveMovieInfo(movieId), retrieveReviewList(movieId),
+                this::toMovie);
+    }
+
+    /**
+     * The movie with counts, average and histogram of its ratings and only its top reviews, all computed by
+     * movies-review-service, instead of every review.
+     */
+    public Mono<Movie> retrieveMovieWithReviewSummary(String movieId, int topReviews, String orderBy) {
+        if (topReviews < 0 || topReviews > MAX_TOP_REVIEWS) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "top must be between 0 and " + MAX_TOP_REVIEWS));
+        }
+        if (!TOP_REVIEWS_ORDERS.contains(orderBy)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "orderBy must be one of : " + String.join(",", TOP_REVIEWS_ORDERS)));
+        }
+        var reviewSummary = degradeReviews(
+                moviesReviewRestClient.retrieveReviewSummary(movieId, topReviews, orderBy), movieId);
+        return Mono.zip(moviesInfoRestClient.retrieveMovieInfo(movieId), reviewSummary,
+                (movieInfo, summary) -> summary
+                        .map(reviews -> new Movie(movieInfo, reviews))
+                        .orElseGet(() -> Movie.withDegradedReviews(movieInfo)));
+    }
+
+    /**
+     * The MovieInfo as soon as it arrives, then the reviews one by one. Both calls are subscribed together,
+     * reviews arriving before the MovieInfo wait for it.
+     */
+    public Flux<MovieEvent> streamMovie(String movieId) {
+        var movieInfoEvent = moviesInfoRestClient.retrieveMovieInfo(movieId).map(MovieEvent::movieInfo);
+        var reviewEvents = moviesReviewRestClient.streamReviews(movieId).map(MovieEvent::review);
+        if (reviewsDegradationEnabled) {
+            // the budget applies to the wait for each next review, not to the whole stream
+            reviewEvents = reviewEvents
+                    .timeout(reviewsTimeout)
+                    .onErrorResume(ex -> {
+                        log.warn("Streaming movie {} without the rest of its reviews : {}", movieId, ex.toString());
+                        return Mono.just(MovieEvent.reviewsDegraded());
+                    });
+        }
+        return Flux.mergeSequential(movieInfoEvent, reviewEvents);
+    }
+
+    private Movie toMovie(MovieInfo movieInfo, Optional<List<Review>> reviews) {
+        return reviews
+                .map(reviewList -> new Movie(movieInfo, reviewList))
+                .orElseGet(() -> Movie.withDegradedReviews(movieInfo));
+    }
+
+    private Mono<Optional<List<Review>>> retrieveReviewList(String movieId) {
+        return degradeReviews(moviesReviewRestClient.retrieveReviews(movieId).collectList(), movieId);
+    }
+
+    private Mono<Optional<Map<String, List<Review>>>> retrieveReviewGroups(List<String> movieIds) {
+        return degradeReviews(moviesReviewRestClient.retrieveReviewGroups(movieIds, batchReviewsPerMovie)
+                .collectMap(ReviewGroup::getMovieInfoId, ReviewGroup::getReviews), movieIds);
+    }
+
+    /**
+     * Empty when degradation is enabled and the reviews did not arrive within their budget.
+     */
+    private <T> Mono<Optional<T>> degradeReviews(Mono<T> reviews, Object movieIds) {
+        var optionalReviews = reviews.map(Optional::of);
+        if (!reviewsDegradationEnabled) {
+            return optionalReviews;
+        }
+        return optionalReviews
+                .timeout(reviewsTimeout)
+                .onErrorResume(ex -> {
+                    log.warn("Serving movies {} without reviews : {}", movieIds, ex.toString());
+                    return Mono.just(Optional.empty());
+                });
+    }
+}
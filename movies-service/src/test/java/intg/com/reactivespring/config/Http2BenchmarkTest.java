@@ -0,0 +1,166 @@
+package com.reactivespring.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.reactivespring.client.MoviesInfoRestClient;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.netty.channel.ChannelOption;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+import reactor.util.function.Tuple2;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the same load through MoviesInfoRestClient over HTTP/1.1 and over h2c against a stub movies-info server,
+ * and reports the number of connections the server saw and the client side latencies.
+ * Run with MOVIES_BENCHMARK=true, e.g. {@code MOVIES_BENCHMARK=true ./gradlew test --tests '*Http2BenchmarkTest'}.
+ */
+@Slf4j
+@EnabledIfEnvironmentVariable(named = "MOVIES_BENCHMARK", matches = "true")
+class Http2BenchmarkTest {
+
+    private static final int REQUESTS = 5000;
+
+    private static final int CONCURRENCY = 200;
+
+    private static final Duration SERVER_DELAY = Duration.ofMillis(20);
+
+    private final Set<String> connections = ConcurrentHashMap.newKeySet();
+
+    @BeforeAll
+    static void quietLogging() {
+        // per-request debug logging would dominate the latencies being measured
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+
+    @Test
+    void http11VersusH2c() {
+
+        var defaultMaxConnections = new WebClientProperties.Downstream().getMaxConnections();
+        var http11 = run(false, defaultMaxConnections);
+        // a burst of acquires opens new connections before the first ones are established, so the pool size is
+        // what actually bounds the connection count with h2c
+        var h2c = run(true, defaultMaxConnections);
+        var h2cSmallPool = run(true, 4);
+
+        log.warn("HTTP/1.1                    : {}", http11);
+        log.warn("h2c                         : {}", h2c);
+        log.warn("h2c with max-connections=4  : {}", h2cSmallPool);
+        assertTrue(h2cSmallPool.connections < http11.connections,
+                "h2c should need fewer connections than HTTP/1.1 at the same load");
+    }
+
+    private Result run(boolean http2, int maxConnections) {
+        // a fresh server per run, so no run can pick up connections left open by the previous one
+        connections.clear();
+        var server = startServer();
+        var downstream = new WebClientProperties.Downstream();
+        downstream.setHttp2(http2);
+        downstream.setMaxConnections(maxConnections);
+        // the cold start of a single JVM hosting both sides can stall the first requests for seconds
+        downstream.setReadTimeout(Duration.ofMinutes(1));
+        downstream.setResponseTimeout(Duration.ofMinutes(1));
+        var properties = new WebClientProperties();
+        properties.setMoviesInfo(downstream);
+
+        var config = new WebClientConfig();
+        var connectionProvider = config.moviesInfoConnectionProvider(properties);
+        try {
+            var webClient = config.moviesInfoWebClient(WebClient.builder(), properties, connectionProvider);
+            // a bulkhead as wide as the load, the connections are what is being measured
+            var bulkheadRegistry = BulkheadRegistry.of(BulkheadConfig.custom().maxConcurrentCalls(CONCURRENCY).build());
+            var moviesInfoRestClient = new MoviesInfoRestClient(webClient, new SimpleMeterRegistry(), properties,
+                    CircuitBreakerRegistry.ofDefaults(), bulkheadRegistry, RetryRegistry.ofDefaults());
+            ReflectionTestUtils.setField(moviesInfoRestClient, "moviesInfoUrl",
+                    "http://localhost:" + server.port() + "/v1/movieinfos");
+
+            // warm up the JIT before measuring latencies, the connections opened here are part of the count
+            load(moviesInfoRestClient, REQUESTS, "warmup-");
+
+            var latencies = load(moviesInfoRestClient, REQUESTS, "movie-");
+            assertEquals(REQUESTS, latencies.size());
+            Collections.sort(latencies);
+            return new Result(connections.size(), percentile(latencies, 50), percentile(latencies, 99));
+        } finally {
+            connectionProvider.dispose();
+            server.disposeNow();
+        }
+    }
+
+    private DisposableServer startServer() {
+        return HttpServer.create()
+                .port(0)
+                // the HTTP/1.1 run opens a connection per in-flight request in one burst
+                .option(ChannelOption.SO_BACKLOG, 1024)
+                .protocol(HttpProtocol.HTTP11, HttpProtocol.H2C)
+                // once per accepted TCP connection, h2 streams do not go through channel init
+                .doOnChannelInit((observer, channel, remoteAddress) -> connections.add(channel.id().asLongText()))
+                .route(routes -> routes.get("/v1/movieinfos/{id}", (request, response) -> {
+                    var body = "{\"movieInfoId\":\"" + request.param("id") + "\",\"name\":\"Batman Begins\","
+                            + "\"year\":2005,\"cast\":[\"Christian Bale\"],\"release_date\":\"2005-06-15\"}";
+                    return response.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .sendString(Mono.delay(SERVER_DELAY).thenReturn(body));
+                }))
+                .bindNow();
+    }
+
+    private List<Long> load(MoviesInfoRestClient moviesInfoRestClient, int requests, String idPrefix) {
+        // distinct ids, so that the client's request coalescing does not hide the concurrency
+        return Flux.range(0, requests)
+                .flatMap(i -> moviesInfoRestClient.retrieveMovieInfo(idPrefix + i)
+                        .elapsed()
+                        .map(Tuple2::getT1), CONCURRENCY)
+                .collect(ArrayList<Long>::new, List::add)
+                .block(Duration.ofMinutes(2));
+    }
+
+    private long percentile(List<Long> sortedLatencies, int percentile) {
+        var index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.size()) - 1;
+        return sortedLatencies.get(Math.max(index, 0));
+    }
+
+    private static class Result {
+
+        private final int connections;
+
+        private final long p50Millis;
+
+        private final long p99Millis;
+
+        private Result(int connections, long p50Millis, long p99Millis) {
+            this.connections = connections;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+        }
+
+        @Override
+        public String toString() {
+            return "connections=" + connections + ", p50=" + p50Millis + "ms, p99=" + p99Millis + "ms";
+        }
+    }
+}
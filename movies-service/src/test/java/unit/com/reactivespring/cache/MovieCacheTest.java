@@ -0,0 +1,172 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.deadline.Deadline;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.DeadlineExceededException;
+import com.reactivespring.service.MovieService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MovieCacheTest {
+
+    private final MovieService movieService = Mockito.mock(MovieService.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final MovieInfo movieInfo = new MovieInfo("abc", "Batman Begins",
+            2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+    private MovieCache movieCache;
+
+    @BeforeEach
+    void setUp() {
+        movieCache = new MovieCache(movieService, meterRegistry, true, 100, 0,
+                Duration.ofMillis(200), Duration.ofMinutes(1), Duration.ofSeconds(1));
+    }
+
+    @Test
+    void get_ServedFromCache() {
+
+        Mockito.when(movieService.retrieveMovie("abc")).thenReturn(Mono.just(movie(1)));
+
+        StepVerifier.create(movieCache.get("abc")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(movieCache.get("abc")).expectNextCount(1).verifyComplete();
+
+        Mockito.verify(movieService, Mockito.times(1)).retrieveMovie("abc");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "movies").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "movies").tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    void get_LoadsWithoutCallerDeadline() {
+
+        Mockito.when(movieService.retrieveMovie("abc"))
+                .thenReturn(Deadline.current().map(deadline -> movie(deadline.isPresent() ? 0 : 1)));
+
+        StepVerifier.create(movieCache.get("abc")
+                        .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofSeconds(1)))))
+                .assertNext(movie -> assertEquals(1, movie.getReviewList().size()))
+                .verifyComplete();
+    }
+
+    @Test
+    void get_EachCallerWaitsWithinItsOwnDeadline() {
+
+        Mockito.when(movieService.retrieveMovie("abc"))
+                .thenReturn(Mono.just(movie(1)).delayElement(Duration.ofMillis(200)));
+
+        var shortBudget = movieCache.get("abc")
+                .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofMillis(50))));
+        var longBudget = movieCache.get("abc")
+                .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofSeconds(1))));
+
+        StepVerifier.create(shortBudget).expectError(DeadlineExceededException.class).verify();
+        StepVerifier.create(longBudget).expectNextCount(1).verifyComplete();
+        Mockito.verify(movieService, Mockito.times(1)).retrieveMovie("abc");
+    }
+
+    @Test
+    void get_LoadBoundedByLoadTimeout() {
+
+        Mockito.when(movieService.retrieveMovie("abc")).thenReturn(Mono.never());
+
+        StepVerifier.create(movieCache.get("abc"))
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void get_CancelledCallerDoesNotFailConcurrentCaller() throws Exception {
+
+        Mockito.when(movieService.retrieveMovie("abc"))
+                .thenReturn(Mono.just(movie(1)).delayElement(Duration.ofMillis(200)));
+
+        var cancelled = movieCache.get("abc").subscribe();
+        var concurrent = movieCache.get("abc").toFuture();
+        cancelled.dispose();
+
+        assertEquals(1, concurrent.get(1, TimeUnit.SECONDS).getReviewList().size());
+        Mockito.verify(movieService, Mockito.times(1)).retrieveMovie("abc");
+    }
+
+    @Test
+    void get_StaleWhileRevalidate() throws InterruptedException {
+
+        Mockito.when(movieService.retrieveMovie("abc"))
+                .thenReturn(Mono.just(movie(1)))
+                .thenReturn(Mono.just(movie(2)));
+
+        StepVerifier.create(movieCache.get("abc"))
+                .assertNext(movie -> assertEquals(1, movie.getReviewList().size()))
+                .verifyComplete();
+
+        Thread.sleep(300);
+
+        // past refresh-after the stale movie is returned right away and the reload happens behind it
+        StepVerifier.create(movieCache.get("abc"))
+                .assertNext(movie -> assertEquals(1, movie.getReviewList().size()))
+                .verifyComplete();
+        Mockito.verify(movieService, Mockito.timeout(1000).times(2)).retrieveMovie("abc");
+        Thread.sleep(50);
+        StepVerifier.create(movieCache.get("abc"))
+                .assertNext(movie -> assertEquals(2, movie.getReviewList().size()))
+                .verifyComplete();
+    }
+
+    @Test
+    void get_DegradedMovieNotCached() {
+
+        Mockito.when(movieService.retrieveMovie("abc"))
+                .thenReturn(Mono.just(Movie.withDegradedReviews(movieInfo)))
+                .thenReturn(Mono.just(movie(1)));
+
+        StepVerifier.create(movieCache.get("abc"))
+                .assertNext(movie -> assertTrue(movie.isReviewsDegraded()))
+                .verifyComplete();
+        StepVerifier.create(movieCache.get("abc"))
+                .assertNext(movie -> assertFalse(movie.isReviewsDegraded()))
+                .verifyComplete();
+
+        Mockito.verify(movieService, Mockito.times(2)).retrieveMovie("abc");
+    }
+
+    @Test
+    void evict() {
+
+        Mockito.when(movieService.retrieveMovie("abc")).thenReturn(Mono.just(movie(1)));
+
+        StepVerifier.create(movieCache.get("abc")).expectNextCount(1).verifyComplete();
+        movieCache.evict("abc");
+        StepVerifier.create(movieCache.get("abc")).expectNextCount(1).verifyComplete();
+
+        Mockito.verify(movieService, Mockito.times(2)).retrieveMovie("abc");
+    }
+
+    private Movie movie(int reviewCount) {
+        var reviews = new ArrayList<Review>();
+        for (int i = 0; i < reviewCount; i++) {
+            reviews.add(new Review(String.valueOf(i), "abc", "Awesome Movie", 9.0));
+        }
+        return new Movie(movieInfo, reviews);
+    }
+}
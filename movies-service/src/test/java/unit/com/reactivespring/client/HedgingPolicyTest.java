@@ -0,0 +1,157 @@
+package com.reactivespring.client;
+
+import com.reactivespring.config.WebClientProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgingPolicyTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void slowFirstAttemptIsHedged() {
+        var hedgingPolicy = warmedUpPolicy(1.0);
+        var attempts = new AtomicInteger();
+        var firstCancelled = new AtomicBoolean();
+
+        var result = hedgingPolicy.execute(() -> attempts.incrementAndGet() == 1
+                ? Mono.just("first").delayElement(Duration.ofSeconds(5)).doOnCancel(() -> firstCancelled.set(true))
+                : Mono.just("hedge"));
+
+        StepVerifier.create(result)
+                .expectNext("hedge")
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(2, attempts.get());
+        assertTrue(firstCancelled.get());
+        assertEquals(1.0, hedgedRequests("sent"));
+        assertEquals(1.0, hedgedRequests("won"));
+    }
+
+    @Test
+    void failedHedgeDoesNotWinTheRace() {
+        var hedgingPolicy = warmedUpPolicy(1.0);
+        var attempts = new AtomicInteger();
+
+        var result = hedgingPolicy.execute(() -> attempts.incrementAndGet() == 1
+                ? Mono.just("first").delayElement(Duration.ofMillis(200))
+                : Mono.error(new IllegalStateException("hedge failed")));
+
+        StepVerifier.create(result)
+                .expectNext("first")
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void failedFirstAttemptIsPropagatedWithoutHedge() {
+        var hedgingPolicy = warmedUpPolicy(1.0);
+        var attempts = new AtomicInteger();
+        var failure = new IllegalStateException("first failed");
+
+        StepVerifier.create(hedgingPolicy.execute(() -> {
+                    attempts.incrementAndGet();
+                    return Mono.<String>error(failure);
+                }))
+                .expectErrorMatches(ex -> ex == failure)
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void bothFailedPropagatesFirstAttemptError() {
+        var hedgingPolicy = warmedUpPolicy(1.0);
+        var attempts = new AtomicInteger();
+        var failure = new IllegalStateException("first failed");
+
+        var result = hedgingPolicy.execute(() -> attempts.incrementAndGet() == 1
+                ? Mono.<String>error(failure).delaySubscription(Duration.ofMillis(200))
+                : Mono.error(new IllegalStateException("hedge failed")));
+
+        StepVerifier.create(result)
+                .expectErrorMatches(ex -> ex == failure)
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void emptyFirstAttemptCompletesEmpty() {
+        var hedgingPolicy = warmedUpPolicy(1.0);
+
+        StepVerifier.create(hedgingPolicy.execute(Mono::<String>empty))
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void fastFirstAttemptIsNotHedged() {
+        var hedgingPolicy = warmedUpPolicy(1.0);
+        var attempts = new AtomicInteger();
+
+        StepVerifier.create(hedgingPolicy.execute(() -> Mono.fromCallable(attempts::incrementAndGet)))
+                .expectNext(1)
+                .verifyComplete();
+
+        assertEquals(1, attempts.get());
+        assertEquals(0.0, hedgedRequests("sent"));
+    }
+
+    @Test
+    void hedgesAreCappedByRatio() {
+        var hedgingPolicy = warmedUpPolicy(0.5);
+        var attempts = new AtomicInteger();
+
+        // 0.5 budget per request: the first request can't afford a hedge, the second one can
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(hedgingPolicy.execute(() -> Mono.fromCallable(attempts::incrementAndGet)
+                            .delayElement(Duration.ofMillis(200))))
+                    .expectNextCount(1)
+                    .verifyComplete();
+        }
+
+        assertEquals(3, attempts.get());
+        assertEquals(1.0, hedgedRequests("throttled"));
+        assertEquals(1.0, hedgedRequests("sent"));
+    }
+
+    @Test
+    void noHedgingWithoutEnoughSamples() {
+        var hedging = new WebClientProperties.Hedging();
+        hedging.setEnabled(true);
+        var hedgingPolicy = new HedgingPolicy("test", hedging, meterRegistry);
+        hedgingPolicy.record(Duration.ofMillis(10));
+
+        assertNull(hedgingPolicy.getHedgeDelay());
+    }
+
+    private HedgingPolicy warmedUpPolicy(double maxRatio) {
+        var hedging = new WebClientProperties.Hedging();
+        hedging.setEnabled(true);
+        hedging.setMaxRatio(maxRatio);
+        hedging.setMinDelay(Duration.ofMillis(50));
+        var hedgingPolicy = new HedgingPolicy("test", hedging, meterRegistry);
+        IntStream.range(0, 20).forEach(i -> hedgingPolicy.record(Duration.ofMillis(1)));
+        assertEquals(Duration.ofMillis(50), hedgingPolicy.getHedgeDelay());
+        return hedgingPolicy;
+    }
+
+    private double hedgedRequests(String result) {
+        return meterRegistry.get("movies.client.hedged.requests").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,62 @@
+package com.reactivespring.client;
+
+import com.reactivespring.config.WebClientProperties;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MoviesInfoRestClientTest {
+
+    private final AtomicReference<ClientRequest> clientRequest = new AtomicReference<>();
+
+    private MoviesInfoRestClient moviesInfoRestClient;
+
+    @BeforeEach
+    void setUp() {
+        var webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    clientRequest.set(request);
+                    return Mono.just(ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body("{\"movieInfos\":[{\"movieInfoId\":\"abc\",\"name\":\"Batman Begins\",\"year\":2005}],"
+                                    + "\"missingIds\":[\"def\"]}")
+                            .build());
+                })
+                .build();
+        moviesInfoRestClient = new MoviesInfoRestClient(webClient, new SimpleMeterRegistry(), new WebClientProperties(),
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), RetryRegistry.ofDefaults());
+        ReflectionTestUtils.setField(moviesInfoRestClient, "moviesInfoUrl", "http://localhost:8080/v1/movieinfos");
+    }
+
+    @Test
+    void retrieveMovieInfos() {
+
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfos(List.of("abc", "def")))
+                .assertNext(batchResponse -> {
+                    assertEquals("abc", batchResponse.getMovieInfos().get(0).getMovieInfoId());
+                    assertEquals(List.of("def"), batchResponse.getMissingIds());
+                })
+                .verifyComplete();
+
+        assertEquals(HttpMethod.POST, clientRequest.get().method());
+        assertEquals("/v1/movieinfos:batchGet", clientRequest.get().url().getPath());
+    }
+}
@@ -0,0 +1,109 @@
+package com.reactivespring.client;
+
+import com.reactivespring.config.WebClientProperties;
+import com.reactivespring.domain.Review;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * movies-review-service only filters on {@code movieInfoId}, pages with {@code limit} and {@code after} and rejects
+ * any other query parameter.
+ */
+class MoviesReviewRestClientTest {
+
+    private final List<URI> requestedUris = new CopyOnWriteArrayList<>();
+
+    private final AtomicReference<List<MediaType>> acceptedTypes = new AtomicReference<>();
+
+    private MoviesReviewRestClient moviesReviewRestClient;
+
+    @BeforeEach
+    void setUp() {
+        // two pages, the first one pointing at the second through its cursor
+        var webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    requestedUris.add(request.url());
+                    acceptedTypes.set(request.headers().getAccept());
+                    var after = UriComponentsBuilder.fromUri(request.url()).build().getQueryParams().getFirst("after");
+                    var page = ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE);
+                    if (after == null) {
+                        return Mono.just(page.header("X-Next-Cursor", "Mg")
+                                .body("{\"reviewId\":\"1\",\"movieInfoId\":\"abc\",\"comment\":\"Awesome Movie\",\"rating\":9.0}\n"
+                                        + "{\"reviewId\":\"2\",\"movieInfoId\":\"abc\",\"comment\":\"Excellent Movie\",\"rating\":8.0}\n")
+                                .build());
+                    }
+                    return Mono.just(page
+                            .body("{\"reviewId\":\"3\",\"movieInfoId\":\"abc\",\"comment\":\"Good Movie\",\"rating\":7.0}\n")
+                            .build());
+                })
+                .build();
+        moviesReviewRestClient = new MoviesReviewRestClient(webClient, new SimpleMeterRegistry(), new WebClientProperties(),
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), RetryRegistry.ofDefaults());
+        ReflectionTestUtils.setField(moviesReviewRestClient, "moviesReviewUrl", "http://localhost:8081/v1/reviews");
+        ReflectionTestUtils.setField(moviesReviewRestClient, "reviewsPageSize", 2);
+    }
+
+    @Test
+    void retrieveReviews_filtersByMovieInfoId() {
+
+        StepVerifier.create(moviesReviewRestClient.retrieveReviews("abc"))
+                .assertNext(review -> assertEquals("abc", review.getMovieInfoId()))
+                .assertNext(review -> assertEquals("2", review.getReviewId()))
+                .assertNext(review -> assertEquals("3", review.getReviewId()))
+                .verifyComplete();
+
+        var queryParams = UriComponentsBuilder.fromUri(requestedUris.get(0)).build().getQueryParams();
+        assertEquals("/v1/reviews", requestedUris.get(0).getPath());
+        assertEquals("abc", queryParams.getFirst("movieInfoId"));
+        assertEquals("2", queryParams.getFirst("limit"));
+        assertEquals(2, queryParams.size());
+        assertFalse(queryParams.containsKey("id"));
+    }
+
+    @Test
+    void retrieveReviews_FollowsNextCursor() {
+
+        StepVerifier.create(moviesReviewRestClient.retrieveReviews("abc"))
+                .expectNextCount(3)
+                .verifyComplete();
+
+        assertEquals(2, requestedUris.size());
+        var queryParams = UriComponentsBuilder.fromUri(requestedUris.get(1)).build().getQueryParams();
+        assertEquals("abc", queryParams.getFirst("movieInfoId"));
+        assertEquals("Mg", queryParams.getFirst("after"));
+    }
+
+    @Test
+    void streamReviews_Ndjson() {
+
+        StepVerifier.create(moviesReviewRestClient.streamReviews("abc").take(1))
+                .assertNext(review -> assertEquals("1", review.getReviewId()))
+                .verifyComplete();
+
+        assertEquals(List.of(MediaType.APPLICATION_NDJSON), acceptedTypes.get());
+        // the next page is only asked for once the current one is consumed
+        assertEquals(1, requestedUris.size());
+    }
+}
@@ -0,0 +1,116 @@
+package com.reactivespring.client;
+
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResiliencePolicyTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    // the same shape as in application.yml, with small numbers
+    private final ResiliencePolicy resiliencePolicy = new ResiliencePolicy("movies-info",
+            CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                    .slidingWindowSize(4)
+                    .minimumNumberOfCalls(4)
+                    .failureRateThreshold(50)
+                    .waitDurationInOpenState(Duration.ofMinutes(1))
+                    .ignoreExceptions(MoviesInfoClientException.class, BulkheadFullException.class)
+                    .build()),
+            BulkheadRegistry.of(BulkheadConfig.custom()
+                    .maxConcurrentCalls(1)
+                    .maxWaitDuration(Duration.ZERO)
+                    .build()),
+            RetryRegistry.of(RetryConfig.custom()
+                    .maxAttempts(3)
+                    .waitDuration(Duration.ofMillis(10))
+                    .retryOnException(new RetryableDownstreamError())
+                    .build()),
+            meterRegistry);
+
+    @Test
+    void execute_RetriesServerErrors() {
+
+        var call = Mono.defer(() -> calls.incrementAndGet() < 3
+                ? Mono.<String>error(new MoviesInfoServerException("Server Exception in MoviesInfoService"))
+                : Mono.just("Batman Begins"));
+
+        StepVerifier.create(resiliencePolicy.execute(call)).expectNext("Batman Begins").verifyComplete();
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void execute_DoesNotRetryClientErrors() {
+
+        var call = Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.<String>error(new MoviesInfoClientException("There is no MovieInfo available", 404));
+        });
+
+        StepVerifier.create(resiliencePolicy.execute(call)).expectError(MoviesInfoClientException.class).verify();
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void execute_FailsFastOnceBreakerIsOpen() {
+
+        var call = Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.<String>error(new MoviesInfoServerException("Server Exception in MoviesInfoService"));
+        });
+
+        // two lookups of three attempts each fill the window with failures
+        StepVerifier.create(resiliencePolicy.execute(call)).expectError().verify();
+        StepVerifier.create(resiliencePolicy.execute(call)).expectError().verify();
+        var callsBeforeOpen = calls.get();
+
+        StepVerifier.create(resiliencePolicy.execute(call)).expectError(CallNotPermittedException.class).verify();
+        assertEquals(callsBeforeOpen, calls.get());
+        assertEquals(1.0, meterRegistry.get("movies.client.circuitbreaker.transitions")
+                .tag("downstream", "movies-info").tag("from", "CLOSED").tag("to", "OPEN")
+                .counter().count());
+    }
+
+    @Test
+    void execute_ClientErrorsDoNotOpenBreaker() {
+
+        var call = Mono.<String>error(new MoviesInfoClientException("There is no MovieInfo available", 404));
+
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(resiliencePolicy.execute(call)).expectError(MoviesInfoClientException.class).verify();
+        }
+    }
+
+    @Test
+    void execute_RejectsBeyondBulkhead() {
+
+        var inFlight = resiliencePolicy.execute(Mono.never()).subscribe();
+
+        StepVerifier.create(resiliencePolicy.execute(Mono.just("Batman Begins")))
+                .expectError(BulkheadFullException.class)
+                .verify();
+
+        inFlight.dispose();
+        StepVerifier.create(resiliencePolicy.execute(Mono.just("Batman Begins")))
+                .expectNext("Batman Begins")
+                .verifyComplete();
+    }
+}
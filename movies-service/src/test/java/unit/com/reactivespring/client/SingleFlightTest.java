@@ -0,0 +1,122 @@
+package com.reactivespring.client;
+
+import com.reactivespring.deadline.Deadline;
+import com.reactivespring.exception.DeadlineExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>("test", meterRegistry);
+
+    @Test
+    void concurrentLookupsShareOneCall() {
+        var calls = new AtomicInteger();
+
+        var lookups = Flux.range(0, 10)
+                .flatMap(i -> singleFlight.execute("abc", key -> Mono.fromCallable(() -> {
+                    calls.incrementAndGet();
+                    return key.toUpperCase();
+                }).delayElement(Duration.ofMillis(100))));
+
+        StepVerifier.create(lookups)
+                .expectNextCount(10)
+                .verifyComplete();
+
+        assertEquals(1, calls.get());
+        assertEquals(1.0, coalescedRequests("leader"));
+        assertEquals(9.0, coalescedRequests("follower"));
+    }
+
+    @Test
+    void completedCallIsNotReused() {
+        var calls = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(singleFlight.execute("abc", key -> Mono.fromCallable(calls::incrementAndGet).map(String::valueOf)))
+                    .expectNext(String.valueOf(i + 1))
+                    .verifyComplete();
+        }
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void errorsAreSharedAndForgotten() {
+        var calls = new AtomicInteger();
+
+        StepVerifier.create(singleFlight.execute("abc", key -> Mono.<String>error(new RuntimeException("boom"))
+                        .doOnSubscribe(subscription -> calls.incrementAndGet())))
+                .verifyErrorMessage("boom");
+
+        StepVerifier.create(singleFlight.execute("abc", key -> Mono.just("ok")))
+                .expectNext("ok")
+                .verifyComplete();
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void callersWaitWithinTheirOwnBudget() {
+        var callDeadline = new AtomicReference<Optional<Deadline>>();
+        Function<String, Mono<String>> call = key -> Deadline.current()
+                .doOnNext(callDeadline::set)
+                .then(Mono.just(key.toUpperCase()).delayElement(Duration.ofMillis(200)));
+
+        var shortBudget = singleFlight.execute("abc", call)
+                .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofMillis(50))));
+        var longBudget = singleFlight.execute("abc", call)
+                .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofSeconds(2))));
+
+        StepVerifier.create(Flux.merge(
+                        shortBudget.onErrorResume(DeadlineExceededException.class, ex -> Mono.just("timed out")),
+                        longBudget))
+                .expectNext("timed out", "ABC")
+                .verifyComplete();
+
+        // the call itself ran without the deadline of the caller that started it
+        assertTrue(callDeadline.get().isEmpty());
+        assertEquals(1.0, coalescedRequests("follower"));
+    }
+
+    @Test
+    void callIsCancelledOnceEveryCallerHasGone() {
+        var cancelled = new AtomicBoolean();
+        Function<String, Mono<String>> call = key -> Mono.<String>never().doOnCancel(() -> cancelled.set(true));
+
+        var first = singleFlight.execute("abc", call).subscribe();
+        var second = singleFlight.execute("abc", call).subscribe();
+        first.dispose();
+        assertFalse(cancelled.get());
+        second.dispose();
+
+        assertTrue(cancelled.get());
+        StepVerifier.create(singleFlight.execute("abc", key -> Mono.just("ok")))
+                .expectNext("ok")
+                .verifyComplete();
+    }
+
+    private double coalescedRequests(String role) {
+        return meterRegistry.get("movies.client.coalesced.requests")
+                .tag("downstream", "test")
+                .tag("role", role)
+                .counter()
+                .count();
+    }
+}
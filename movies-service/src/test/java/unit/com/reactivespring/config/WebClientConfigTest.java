@@ -0,0 +1,38 @@
+package com.reactivespring.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WebClientConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(WebClientAutoConfiguration.class))
+            .withUserConfiguration(WebClientConfig.class);
+
+    @Test
+    void connectionPoolPerDownstream() {
+
+        contextRunner
+                .withPropertyValues("webclient.movies-info.max-connections=20",
+                        "webclient.movies-info.pending-acquire-timeout=250ms",
+                        "webclient.movies-review.max-connections=10")
+                .run(context -> {
+                    assertEquals(2, context.getBeansOfType(WebClient.class).size());
+
+                    var properties = context.getBean(WebClientProperties.class);
+                    assertEquals(Duration.ofMillis(250), properties.getMoviesInfo().getPendingAcquireTimeout());
+                    assertEquals(Duration.ofSeconds(5), properties.getMoviesReview().getPendingAcquireTimeout());
+
+                    assertEquals(20, context.getBean("moviesInfoConnectionProvider", ConnectionProvider.class).maxConnections());
+                    assertEquals(10, context.getBean("moviesReviewConnectionProvider", ConnectionProvider.class).maxConnections());
+                });
+    }
+}
@@ -0,0 +1,115 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.cache.MovieCache;
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.MoviesReviewRestClient;
+import com.reactivespring.deadline.Deadline;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.service.MovieService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GET /v1/movies/{id} through the movie cache, which MoviesControllerUnitTest disables.
+ */
+@WebFluxTest(controllers = MovieServiceController.class, properties = "movies.cache.enabled=true")
+@Import({MovieService.class, MovieCache.class, SimpleMeterRegistry.class})
+@AutoConfigureWebTestClient
+public class MoviesControllerCacheUnitTest {
+
+    private final String BASE_URL = "/v1/movies";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private MoviesInfoRestClient moviesInfoRestClient;
+
+    @MockBean
+    private MoviesReviewRestClient moviesReviewRestClient;
+
+    private final MovieInfo movieInfo = new MovieInfo("abc", "Batman Begins",
+            2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+    @Test
+    void getMovieById_LoadedWithoutRequestDeadline() {
+
+        // a shared load must not be cut short by the budget of the request that happened to start it
+        Mockito.when(moviesInfoRestClient.retrieveMovieInfo("abc")).thenReturn(Mono.just(movieInfo));
+        Mockito.when(moviesReviewRestClient.retrieveReviews("abc")).thenReturn(Deadline.current()
+                .filter(Optional::isEmpty)
+                .map(deadline -> new Review("1", "abc", "Awesome Movie", 9.0))
+                .flux());
+
+        webTestClient.get()
+                .uri(BASE_URL + "/{id}", "abc")
+                .header(Deadline.BUDGET_HEADER, "1000")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assert movie != null;
+                    assertEquals(1, movie.getReviewList().size());
+                });
+    }
+
+    @Test
+    void getMovieById_LoadOutlivesTimedOutCaller() {
+
+        var darkKnight = new MovieInfo("def", "The Dark Knight",
+                2008, List.of("Christian Bale"), LocalDate.parse("2008-07-18"));
+        Mockito.when(moviesInfoRestClient.retrieveMovieInfo("def"))
+                .thenReturn(Mono.just(darkKnight).delayElement(Duration.ofMillis(300)));
+        Mockito.when(moviesReviewRestClient.retrieveReviews("def")).thenReturn(Flux.empty());
+
+        webTestClient.get()
+                .uri(BASE_URL + "/{id}", "def")
+                .header(Deadline.BUDGET_HEADER, "100")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+
+        webTestClient.get()
+                .uri(BASE_URL + "/{id}", "def")
+                .header(Deadline.BUDGET_HEADER, "1000")
+                .exchange()
+                .expectStatus().isOk();
+
+        Mockito.verify(moviesInfoRestClient, Mockito.times(1)).retrieveMovieInfo("def");
+    }
+
+    @Test
+    void getMovieById_DeadlineExceeded() {
+
+        Mockito.when(moviesInfoRestClient.retrieveMovieInfo("xyz")).thenReturn(Mono.never());
+        Mockito.when(moviesReviewRestClient.retrieveReviews("xyz")).thenReturn(Flux.empty());
+
+        webTestClient.get()
+                .uri(BASE_URL + "/{id}", "xyz")
+                .header(Deadline.BUDGET_HEADER, "100")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT)
+                // the deadline is enforced both while waiting on the cache and around the whole request
+                .expectBody(String.class).value(body -> assertTrue(body.startsWith("Request deadline"), body));
+    }
+}
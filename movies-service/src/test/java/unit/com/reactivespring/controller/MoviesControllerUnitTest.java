@@ -1,4 +1,315 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.cache.MovieCache;
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.MoviesReviewRestClient;
+import com.reactivespring.deadline.Deadline;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieEvent;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchResponse;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewGroup;
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.ReviewsServerException;
+import com.reactivespring.service.MovieService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@WebFluxTest(controllers = MovieServiceController.class,
+        properties = {"movies.reviews.degradation.enabled=true", "movies.reviews.degradation.timeout=200ms",
+                "movies.batch.max-ids=3", "movies.batch.chunk-size=2", "movies.cache.enabled=false"})
+@Import({MovieService.class, MovieCache.class, SimpleMeterRegistry.class})
+@AutoConfigureWebTestClient
 public class MoviesControllerUnitTest {
+
+    private final String BASE_URL = "/v1/movies";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private MoviesInfoRestClient moviesInfoRestClient;
+
+    @MockBean
+    private MoviesReviewRestClient moviesReviewRestClient;
+
+    private final MovieInfo movieInfo = new MovieInfo("abc", "Batman Begins",
+            2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+    @Test
+    void getMovieById() {
+
+        Mockito.when(moviesInfoRestClient.retrieveMovieInfo("abc")).thenReturn(Mono.just(movieInfo));
+        Mockito.when(moviesReviewRestClient.retrieveReviews("abc")).thenReturn(Flux.just(
+                new Review("1", "abc", "Awesome Movie", 9.0),
+                new Review("2", "abc", "Excellent Movie", 8.0)));
+
+        webTestClient.get()
+                .uri(BASE_URL + "/{id}", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assert movie != null;
+                    assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                    assertEquals(2, movie.getReviewList().size());
+                    assertFalse(movie.isReviewsDegraded());
+                });
+    }
+
+    @Test
+    void getMovieById_ReviewsFailing() {
+
+        Mockito.when(moviesInfoRestClient.retrieveMovieInfo("abc")).thenReturn(Mono.just(movieInfo));
+        Mockito.when(moviesReviewRestClient.retrieveReviews("abc"))
+                .thenReturn(Flux.error(new ReviewsServerException("Server Exception in ReviewsService")));
+
+        webTestClient.get()
+                .uri(BASE_URL + "/{id}", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assert movie != null;
+                    assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                    assertTrue(movie.getReviewList().isEmpty());
+                    assertTrue(movie.isReviewsDegraded());
+                });
+    }
+
+    @Test
+    void getMovieById_ReviewsTooSlow() {
+
+        Mockito.when(moviesInfoRestClient.retrieveMovieInfo("abc")).thenReturn(Mono.just(movieInfo));
+        Mockito.when(moviesReviewRestClient.retrieveReviews("abc")).thenReturn(Flux.never());
+
+        webTestClient.get()
+                .uri(BASE_URL + "/{id}", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assert movie != null;
+                    assertTrue(movie.isReviewsDegraded());
+                });
+    }
+
+    @Test
+    void getMovieById_MovieInfoNotFound() {
+
+        Mockito.when(moviesInfoRestClient.retrieveMovieInfo("abc")).thenReturn(Mono.error(
+                new MoviesInfoClientException("There is no MovieInfo available for the passed in Id : abc", 404)));
+        Mockito.when(moviesReviewRestClient.retrieveReviews("abc")).thenReturn(Flux.empty());
+
+        webTestClient.get()
+                .uri(BASE_URL + "/{id}", "abc")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class).isEqualTo("There is no MovieInfo available for the passed in Id : abc");
+    }
+
+    @Test
+    void getMovieById_DeadlineExceeded() {
+
+        Mockito.when(moviesInfoRestClient.retrieveMovieInfo("abc")).thenReturn(Mono.never());
+        Mockito.when(moviesReviewRestClient.retrieveReviews("abc")).thenReturn(Flux.empty());
+
+        webTestClient.get()
+                .uri(BASE_URL + "/{id}", "abc")
+                .header(Deadline.BUDGET_HEADER, "100")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT)
+                .expectBody(String.class).isEqualTo("Request deadline of 100ms exceeded");
+    }
+
+    @Test
+    void getMovieWithReviewSummaryById() {
+
+        Mockito.when(moviesInfoRestClient.retrieveMovieInfo("abc")).thenReturn(Mono.just(movieInfo));
+        Mockito.when(moviesReviewRestClient.retrieveReviewSummary("abc", 1, "rating")).thenReturn(Mono.just(
+                new ReviewSummary("abc", 2, 8.5, Map.of(9, 1L, 8, 1L),
+                        List.of(new Review("1", "abc", "Awesome Movie", 9.0)))));
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(BASE_URL + "/{id}")
+                        .queryParam("reviews", "summary")
+                        .queryParam("top", "1")
+                        .build("abc"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.movieInfo.name").isEqualTo("Batman Begins")
+                .jsonPath("$.reviewSummary.reviewCount").isEqualTo(2)
+                .jsonPath("$.reviewSummary.averageRating").isEqualTo(8.5)
+                .jsonPath("$.reviewSummary.topReviews.length()").isEqualTo(1)
+                .jsonPath("$.reviewList").doesNotExist();
+
+        Mockito.verify(moviesReviewRestClient, Mockito.never()).retrieveReviews("abc");
+    }
+
+    @Test
+    void getMovieWithReviewSummaryById_TooManyTopReviews() {
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(BASE_URL + "/{id}")
+                        .queryParam("reviews", "summary")
+                        .queryParam("top", "500")
+                        .build("abc"))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("top must be between 0 and 50");
+    }
+
+    @Test
+    void streamMovieById() {
+
+        Mockito.when(moviesInfoRestClient.retrieveMovieInfo("abc"))
+                .thenReturn(Mono.just(movieInfo).delayElement(Duration.ofMillis(100)));
+        Mockito.when(moviesReviewRestClient.streamReviews("abc")).thenReturn(Flux.just(
+                new Review("1", "abc", "Awesome Movie", 9.0),
+                new Review("2", "abc", "Excellent Movie", 8.0)));
+
+        webTestClient.get()
+                .uri(BASE_URL + "/{id}/stream", "abc")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(MovieEvent.class)
+                .consumeWith(movieEventListExchangeResult -> {
+                    var movieEvents = movieEventListExchangeResult.getResponseBody();
+                    assert movieEvents != null;
+                    // the MovieInfo leads even though the reviews were there first
+                    assertEquals(3, movieEvents.size());
+                    assertEquals(MovieEvent.Type.MOVIE_INFO, movieEvents.get(0).getType());
+                    assertEquals("Batman Begins", movieEvents.get(0).getMovieInfo().getName());
+                    assertEquals("1", movieEvents.get(1).getReview().getReviewId());
+                    assertEquals("2", movieEvents.get(2).getReview().getReviewId());
+                });
+    }
+
+    @Test
+    void streamMovieById_ReviewsFailing() {
+
+        Mockito.when(moviesInfoRestClient.retrieveMovieInfo("abc")).thenReturn(Mono.just(movieInfo));
+        Mockito.when(moviesReviewRestClient.streamReviews("abc")).thenReturn(Flux.concat(
+                Flux.just(new Review("1", "abc", "Awesome Movie", 9.0)),
+                Flux.error(new ReviewsServerException("Server Exception in ReviewsService"))));
+
+        webTestClient.get()
+                .uri(BASE_URL + "/{id}/stream", "abc")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(MovieEvent.class)
+                .consumeWith(movieEventListExchangeResult -> {
+                    var movieEvents = movieEventListExchangeResult.getResponseBody();
+                    assert movieEvents != null;
+                    assertEquals(3, movieEvents.size());
+                    assertEquals(MovieEvent.Type.REVIEW, movieEvents.get(1).getType());
+                    assertEquals(MovieEvent.Type.REVIEWS_DEGRADED, movieEvents.get(2).getType());
+                });
+    }
+
+    @Test
+    void streamMovieById_MovieInfoNotFound() {
+
+        Mockito.when(moviesInfoRestClient.retrieveMovieInfo("abc")).thenReturn(Mono.error(
+                new MoviesInfoClientException("There is no MovieInfo available for the passed in Id : abc", 404)));
+        Mockito.when(moviesReviewRestClient.streamReviews("abc")).thenReturn(Flux.empty());
+
+        webTestClient.get()
+                .uri(BASE_URL + "/{id}/stream", "abc")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void getMoviesByIds() {
+
+        var otherMovieInfo = new MovieInfo("def", "The Dark Knight",
+                2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18"));
+        Mockito.when(moviesInfoRestClient.retrieveMovieInfos(List.of("def", "xyz")))
+                .thenReturn(Mono.just(new MovieInfoBatchResponse(List.of(otherMovieInfo), List.of("xyz")))
+                        .delayElement(Duration.ofMillis(100)));
+        Mockito.when(moviesReviewRestClient.retrieveReviewGroups(List.of("def", "xyz"), 20))
+                .thenReturn(Flux.just(new ReviewGroup("def", List.of(new Review("1", "def", "Awesome Movie", 9.0)))));
+        Mockito.when(moviesInfoRestClient.retrieveMovieInfos(List.of("abc")))
+                .thenReturn(Mono.just(new MovieInfoBatchResponse(List.of(movieInfo), List.of())));
+        Mockito.when(moviesReviewRestClient.retrieveReviewGroups(List.of("abc"), 20)).thenReturn(Flux.empty());
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(BASE_URL).queryParam("ids", "def,xyz,abc,def").build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Movie.class)
+                .consumeWith(movieListEntityExchangeResult -> {
+                    var movies = movieListEntityExchangeResult.getResponseBody();
+                    assert movies != null;
+                    assertEquals(2, movies.size());
+                    assertEquals("def", movies.get(0).getMovieInfo().getMovieInfoId());
+                    assertEquals(1, movies.get(0).getReviewList().size());
+                    assertEquals("abc", movies.get(1).getMovieInfo().getMovieInfoId());
+                    assertTrue(movies.get(1).getReviewList().isEmpty());
+                });
+    }
+
+    @Test
+    void getMoviesByIds_Post() {
+
+        Mockito.when(moviesInfoRestClient.retrieveMovieInfos(List.of("abc")))
+                .thenReturn(Mono.just(new MovieInfoBatchResponse(List.of(movieInfo), List.of())));
+        Mockito.when(moviesReviewRestClient.retrieveReviewGroups(List.of("abc"), 20))
+                .thenReturn(Flux.error(new ReviewsServerException("Server Exception in ReviewsService")));
+
+        webTestClient.post()
+                .uri(BASE_URL + "/batch")
+                .bodyValue(List.of("abc"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Movie.class)
+                .consumeWith(movieListEntityExchangeResult -> {
+                    var movies = movieListEntityExchangeResult.getResponseBody();
+                    assert movies != null;
+                    assertEquals(1, movies.size());
+                    assertTrue(movies.get(0).isReviewsDegraded());
+                });
+    }
+
+    @Test
+    void getMoviesByIds_TooManyIds() {
+
+        webTestClient.post()
+                .uri(BASE_URL + "/batch")
+                .bodyValue(List.of("a", "b", "c", "d"))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("At most 3 movie ids can be requested at once");
+    }
 }
@@ -0,0 +1,73 @@
+package com.reactivespring.deadline;
+
+import com.reactivespring.exception.DeadlineExceededException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineExchangeFilterTest {
+
+    private final DeadlineExchangeFilter deadlineExchangeFilter = new DeadlineExchangeFilter();
+
+    private final AtomicReference<ClientRequest> sentRequest = new AtomicReference<>();
+
+    private final ClientRequest request = ClientRequest.create(HttpMethod.GET,
+            URI.create("http://localhost:8080/v1/movieinfos/abc")).build();
+
+    @Test
+    void filter_PropagatesRemainingBudget() {
+
+        var response = deadlineExchangeFilter.filter(request, this::respondOk)
+                .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofSeconds(2))));
+
+        StepVerifier.create(response).expectNextCount(1).verifyComplete();
+        var budget = Long.parseLong(sentRequest.get().headers().getFirst(Deadline.BUDGET_HEADER));
+        assertTrue(budget > 0 && budget <= 2000);
+    }
+
+    @Test
+    void filter_NoDeadline() {
+
+        StepVerifier.create(deadlineExchangeFilter.filter(request, this::respondOk))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertFalse(sentRequest.get().headers().containsKey(Deadline.BUDGET_HEADER));
+    }
+
+    @Test
+    void filter_DeadlineAlreadyPassed() {
+
+        var response = deadlineExchangeFilter.filter(request, this::respondOk)
+                .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ZERO)));
+
+        StepVerifier.create(response).expectError(DeadlineExceededException.class).verify();
+        assertNull(sentRequest.get());
+    }
+
+    @Test
+    void filter_DeadlinePassesWhileWaiting() {
+
+        var response = deadlineExchangeFilter.filter(request, clientRequest -> Mono.never())
+                .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofMillis(100))));
+
+        StepVerifier.create(response).expectError(DeadlineExceededException.class).verify(Duration.ofSeconds(5));
+    }
+
+    private Mono<ClientResponse> respondOk(ClientRequest clientRequest) {
+        sentRequest.set(clientRequest);
+        return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+    }
+}
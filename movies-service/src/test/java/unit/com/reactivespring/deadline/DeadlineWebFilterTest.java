@@ -0,0 +1,71 @@
+package com.reactivespring.deadline;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineWebFilterTest {
+
+    private final DeadlineWebFilter deadlineWebFilter = new DeadlineWebFilter();
+
+    private final AtomicReference<Optional<Deadline>> seenDeadline = new AtomicReference<>();
+
+    // takes longer than the default budget
+    private final WebFilterChain slowChain = exchange -> Deadline.current()
+            .doOnNext(seenDeadline::set)
+            .then(Mono.delay(Duration.ofMillis(300)))
+            .then();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(deadlineWebFilter, "defaultBudget", Duration.ofMillis(100));
+        ReflectionTestUtils.setField(deadlineWebFilter, "maxBudget", Duration.ofSeconds(30));
+        deadlineWebFilter.setStreamingPaths(List.of("/v1/movies/*/stream"));
+    }
+
+    @Test
+    void filter_DefaultBudget() {
+
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/movies/abc"));
+
+        StepVerifier.create(deadlineWebFilter.filter(exchange, slowChain)).verifyComplete();
+        assertTrue(seenDeadline.get().isPresent());
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void filter_StreamingPathWithoutDefaultBudget() {
+
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/movies/abc/stream"));
+
+        StepVerifier.create(deadlineWebFilter.filter(exchange, slowChain)).verifyComplete();
+        assertTrue(seenDeadline.get().isEmpty());
+        assertNull(exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void filter_StreamingPathWithRequestedBudget() {
+
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/movies/abc/stream")
+                .header(Deadline.BUDGET_HEADER, "100"));
+
+        StepVerifier.create(deadlineWebFilter.filter(exchange, slowChain)).verifyComplete();
+        assertTrue(seenDeadline.get().isPresent());
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, exchange.getResponse().getStatusCode());
+    }
+}
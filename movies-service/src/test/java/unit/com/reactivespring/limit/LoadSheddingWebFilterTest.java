@@ -0,0 +1,61 @@
+package com.reactivespring.limit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LoadSheddingWebFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // a single request in flight at a time
+    private final LoadSheddingWebFilter loadSheddingWebFilter = new LoadSheddingWebFilter(meterRegistry, true,
+            1, 1, 1, Duration.ofSeconds(2));
+
+    @Test
+    void filter_RejectsOverLimit() {
+
+        var inFlight = Sinks.empty();
+        var first = loadSheddingWebFilter.filter(exchange("/v1/movies/abc"), exchange -> inFlight.asMono().then())
+                .subscribe();
+
+        var rejected = exchange("/v1/movies/def");
+        StepVerifier.create(loadSheddingWebFilter.filter(rejected, exchange -> Mono.empty())).verifyComplete();
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getResponse().getStatusCode());
+        assertEquals("2", rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1.0, meterRegistry.get("movies.load.shedding.rejected").counter().count());
+
+        // once the first request is done there is room again
+        inFlight.tryEmitEmpty();
+        first.dispose();
+        var admitted = exchange("/v1/movies/def");
+        StepVerifier.create(loadSheddingWebFilter.filter(admitted, exchange -> Mono.empty())).verifyComplete();
+        assertNull(admitted.getResponse().getStatusCode());
+    }
+
+    @Test
+    void filter_OtherPathsNotLimited() {
+
+        loadSheddingWebFilter.filter(exchange("/v1/movies/abc"), exchange -> Mono.never()).subscribe();
+
+        var admin = exchange("/v1/admin/cache/movies");
+        StepVerifier.create(loadSheddingWebFilter.filter(admin, exchange -> Mono.empty())).verifyComplete();
+        assertNull(admin.getResponse().getStatusCode());
+    }
+
+    private ServerWebExchange exchange(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+}